@@ -0,0 +1,73 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * Measures how the throughput of the model scales with the number of threads, for a mix of 90%
+ * snapshot reads and 10% writes.
+ * <p>
+ * Usage: {@code ConcurrencyBenchmark [operations per thread]}, 1 million by default.
+ * </p>
+ */
+public class ConcurrencyBenchmark {
+
+    private static final String[] CATEGORIES = {"food", "travel", "bills", "entertainment", "other"};
+
+    public static void main(String[] args) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("threads\tops/s (90% reads, 10% writes)");
+        for (int threads = 1; threads <= cores; threads <<= 1) {
+            ExpenseTrackerModel model = new ExpenseTrackerModel();
+            long start = System.nanoTime();
+            run(model, threads, operations);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d\t%.0f%n", threads, threads * operations / seconds);
+        }
+    }
+
+    // Starts the workers together and waits for all of them
+    private static void run(ExpenseTrackerModel model, int threads, int operations) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            results.add(pool.submit(() -> {
+                start.await();
+                List<Transaction> added = new ArrayList<>();
+                long checksum = 0;
+                for (int i = 0; i < operations; i++) {
+                    if (i * 7919L % 1000 < 100) {
+                        if (i % 4 != 3 || added.isEmpty()) {
+                            Transaction transaction = new Transaction(1 + (worker * 31 + i) % 999, CATEGORIES[i % CATEGORIES.length]);
+                            model.addTransaction(transaction);
+                            added.add(transaction);
+                        } else {
+                            model.removeTransaction(added.remove(added.size() - 1));
+                        }
+                    } else {
+                        TransactionSnapshot snapshot = model.getSnapshot();
+                        int size = snapshot.size();
+                        checksum += size > 0 ? (long) snapshot.getAmount(size - 1) : 0;
+                    }
+                }
+                return checksum;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,58 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import model.ExpenseTrackerModel;
+import model.Persistence.CsvImporter;
+
+/**
+ * Measures how many rows per second the {@link CsvImporter} adds to the model.
+ * <p>
+ * Usage: {@code CsvImportBenchmark [file] [lines] [threads]}. The file is generated first
+ * if it does not exist, with 10 million lines by default.
+ * </p>
+ */
+public class CsvImportBenchmark {
+
+    private static final String[] CATEGORIES = {"food", "travel", "bills", "entertainment", "other"};
+
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : "bin/import-benchmark.csv");
+        int lines = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        if (!Files.exists(file)) {
+            generate(file, lines);
+        }
+
+        long size = Files.size(file);
+        for (int run = 1; run <= 3; run++) {
+            ExpenseTrackerModel model = new ExpenseTrackerModel();
+            long start = System.nanoTime();
+            CsvImporter.ImportReport report = new CsvImporter().setHeader(true).setThreads(threads).importFile(file, model);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("run %d: %d rows in %.2f s, %.0f rows/s, %.0f MB/s, %d rejected%n",
+                run, report.getRowsImported(), seconds, report.getRowsImported() / seconds,
+                size / seconds / 1e6, report.getRejectedCount());
+        }
+    }
+
+    private static void generate(Path file, int lines) throws IOException {
+        long time = 1_600_000_000_000L;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            out.write("amount,category,time\n");
+            for (int i = 0; i < lines; i++) {
+                out.write(Integer.toString(1 + i % 999));
+                out.write('.');
+                out.write(Integer.toString(10 + i % 90));
+                out.write(',');
+                out.write(CATEGORIES[i % CATEGORIES.length]);
+                out.write(',');
+                out.write(Long.toString(time + i * 60_000L));
+                out.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionSnapshot;
+import model.Filter.AmountFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.RowIndexFilter;
+
+/**
+ * Compares {@link AmountFilter} and {@link CategoryFilter} with the single-threaded loops they replaced.
+ * <p>
+ * Each filter is run on a plain list, which it scans in parallel above {@code RowScan.PARALLEL_THRESHOLD}
+ * rows, and on a model snapshot, which it answers from the indexes.
+ * </p>
+ * <p>
+ * Usage: {@code FilterBenchmark [rows]}, 20 million rows by default.
+ * </p>
+ */
+public class FilterBenchmark {
+
+    private static final String[] CATEGORIES = {"food", "travel", "bills", "entertainment", "other"};
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        List<Transaction> batch = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            batch.add(new Transaction(1 + (i * 7919L) % 999, CATEGORIES[i % CATEGORIES.length]));
+            if (batch.size() == 100_000) {
+                model.addTransactions(batch);
+                batch.clear();
+            }
+        }
+        model.addTransactions(batch);
+        TransactionSnapshot snapshot = model.getSnapshot();
+        List<Transaction> list = new ArrayList<>(snapshot);
+        System.out.printf("%d rows, %d cores%n", size, Runtime.getRuntime().availableProcessors());
+
+        compare("amount 500", new AmountFilter(500), () -> baselineAmount(list, 500).size(), list, snapshot);
+        compare("category travel", new CategoryFilter("travel"), () -> baselineCategory(list, "travel").size(),
+            list, snapshot);
+    }
+
+    private static void compare(String name, RowIndexFilter filter, IntSupplier baseline, List<Transaction> list,
+            TransactionSnapshot snapshot) {
+        double loop = time(baseline);
+        double scan = time(() -> filter.filterRows(list).cardinality());
+        double index = time(() -> filter.filterRows(snapshot).cardinality());
+        if (baseline.getAsInt() != filter.filterRows(snapshot).cardinality()) {
+            throw new AssertionError(name + ": the filter and the baseline disagree");
+        }
+        System.out.printf("%-16s baseline %7.1f ms, list scan %7.1f ms (%.1fx), snapshot index %7.1f ms (%.1fx)%n",
+            name, loop, scan, loop / scan, index, loop / index);
+    }
+
+    // The list-based AmountFilter.filter before the store and the parallel scans
+    private static List<Transaction> baselineAmount(List<Transaction> transactions, double amountFilter) {
+        List<Transaction> filteredTransactions = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            if (transaction.getAmount() == amountFilter) {
+                filteredTransactions.add(transaction);
+            }
+        }
+        return filteredTransactions;
+    }
+
+    // The list-based CategoryFilter.filter before the store and the parallel scans
+    private static List<Transaction> baselineCategory(List<Transaction> transactions, String categoryFilter) {
+        List<Transaction> filteredTransactions = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            if (transaction.getCategory().equalsIgnoreCase(categoryFilter)) {
+                filteredTransactions.add(transaction);
+            }
+        }
+        return filteredTransactions;
+    }
+
+    // Best of several runs after warming up, in milliseconds
+    private static double time(IntSupplier filter) {
+        int matches = filter.getAsInt();
+        double best = Double.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            if (filter.getAsInt() != matches) {
+                throw new AssertionError("Runs disagree");
+            }
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,170 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import controller.ExpenseTrackerController;
+import metrics.LatencyHistogram;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.Filter.AmountFilter;
+import model.Filter.CategoryFilter;
+
+/**
+ * Soak test which drives a headless {@link ExpenseTrackerController} with mixed add, filter,
+ * remove and undo traffic, and periodically reports the throughput, the latency percentiles
+ * of each operation and the heap used after a full collection.
+ * <p>
+ * The controller is driven from one thread, like the event dispatch thread of the application.
+ * It is configured through system properties:
+ * </p>
+ * <ul>
+ * <li>{@code load.seconds}: how long to run, 60 by default, e.g. 14400 for a four hour soak.</li>
+ * <li>{@code load.rows}: the transactions added before the run, 100000 by default.</li>
+ * <li>{@code load.maxRows}: adds turn into removes above this size, 1000000 by default,
+ *     so the ledger does not grow without bound.</li>
+ * <li>{@code load.mix}: the weights of add, filter, remove and undo, "50,30,10,10" by default.</li>
+ * <li>{@code load.report}: seconds between reports, 10 by default.</li>
+ * <li>{@code load.seed}: the seed of the random traffic, 1 by default.</li>
+ * </ul>
+ */
+public class LoadGenerator {
+
+    private static final String[] CATEGORIES = {"food", "travel", "bills", "entertainment", "other"};
+    private static final String[] OPERATIONS = {"add", "filter", "remove", "undo"};
+    private static final int ADD = 0;
+    private static final int FILTER = 1;
+    private static final int REMOVE = 2;
+    private static final int UNDO = 3;
+
+    public static void main(String[] args) {
+        long seconds = Long.getLong("load.seconds", 60);
+        int rows = Integer.getInteger("load.rows", 100_000);
+        int maxRows = Integer.getInteger("load.maxRows", 1_000_000);
+        long reportNanos = TimeUnit.SECONDS.toNanos(Long.getLong("load.report", 10));
+        Random random = new Random(Long.getLong("load.seed", 1));
+        int[] weights = Arrays.stream(System.getProperty("load.mix", "50,30,10,10").split(","))
+            .mapToInt(weight -> Integer.parseInt(weight.trim())).toArray();
+        if (weights.length != OPERATIONS.length) {
+            throw new IllegalArgumentException("load.mix needs a weight for each of " + Arrays.toString(OPERATIONS));
+        }
+        int totalWeight = Arrays.stream(weights).sum();
+
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        AtomicLong errors = new AtomicLong();
+        ExpenseTrackerController controller = new ExpenseTrackerController(model, null, message -> errors.incrementAndGet());
+        List<Transaction> batch = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            batch.add(transaction(random));
+        }
+        controller.addTransactions(batch);
+        batch = null;
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long startHeap = usedHeapAfterGc(memory);
+        System.out.printf("%d rows, mix %s %s, %d seconds%n", rows, Arrays.toString(OPERATIONS),
+            Arrays.toString(weights), seconds);
+
+        LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long nextReport = start + reportNanos;
+        long operations = 0;
+        long intervalStart = start;
+        long intervalOperations = 0;
+        for (long now = start; now < end; now = System.nanoTime()) {
+            int operation = pick(random, weights, totalWeight);
+            int size = model.getTransactions().size();
+            if (operation == ADD && size >= maxRows) {
+                operation = REMOVE;
+            }
+            long begin = System.nanoTime();
+            run(operation, controller, size, random);
+            latencies[operation].record(System.nanoTime() - begin);
+            operations++;
+            intervalOperations++;
+
+            if (now >= nextReport) {
+                long heap = usedHeapAfterGc(memory);
+                double interval = (System.nanoTime() - intervalStart) / 1e9;
+                System.out.printf("%6.0fs %,12d ops %,10.0f ops/s %,10d rows, heap %,8.1f MB (%+,.1f MB), %d errors%n",
+                    (now - start) / 1e9, operations, intervalOperations / interval, model.getTransactions().size(),
+                    heap / 1e6, (heap - startHeap) / 1e6, errors.get());
+                for (int i = 0; i < latencies.length; i++) {
+                    System.out.printf("        %-7s %s%n", OPERATIONS[i], summary(latencies[i]));
+                    latencies[i].reset();
+                }
+                // The collection is not part of the next interval
+                intervalStart = System.nanoTime();
+                intervalOperations = 0;
+                nextReport = intervalStart + reportNanos;
+            }
+        }
+        System.out.printf("%,d operations in %d seconds, %,.0f ops/s%n", operations, seconds,
+            operations / ((System.nanoTime() - start) / 1e9));
+    }
+
+    private static void run(int operation, ExpenseTrackerController controller, int size, Random random) {
+        switch (operation) {
+            case ADD:
+                controller.addTransaction(1 + random.nextInt(99_900) / 100.0, CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                break;
+            case FILTER:
+                if (random.nextBoolean()) {
+                    controller.setFilter(new CategoryFilter(CATEGORIES[random.nextInt(CATEGORIES.length)]));
+                } else {
+                    controller.setFilter(new AmountFilter(1 + random.nextInt(999)));
+                }
+                controller.applyFilter();
+                break;
+            case REMOVE:
+                if (size > 0) {
+                    controller.removeTransaction(new int[] {random.nextInt(size)});
+                }
+                break;
+            case UNDO:
+                controller.undo();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    private static int pick(Random random, int[] weights, int totalWeight) {
+        int r = random.nextInt(totalWeight);
+        int operation = 0;
+        while (r >= weights[operation]) {
+            r -= weights[operation++];
+        }
+        return operation;
+    }
+
+    private static Transaction transaction(Random random) {
+        return new Transaction(1 + random.nextInt(99_900) / 100.0, CATEGORIES[random.nextInt(CATEGORIES.length)]);
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static String summary(LatencyHistogram latencies) {
+        if (latencies.getCount() == 0) {
+            return "no operations";
+        }
+        return String.format("%,10d ops  p50 %s  p90 %s  p99 %s  p99.9 %s  max %s", latencies.getCount(),
+            micros(latencies.getP50Micros()), micros(latencies.getP90Micros()), micros(latencies.getP99Micros()),
+            micros(latencies.getP999Micros()), micros(latencies.getMaxMicros()));
+    }
+
+    private static String micros(double micros) {
+        return String.format("%,9.1f us", micros);
+    }
+}
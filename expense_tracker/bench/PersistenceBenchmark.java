@@ -0,0 +1,88 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.Persistence.WriteAheadLog;
+
+/**
+ * Measures the durable appends per second of the {@link WriteAheadLog} with several writers sharing
+ * its group commit, and how long a snapshot file takes to write and to open.
+ * <p>
+ * Usage: {@code PersistenceBenchmark [writers] [snapshot rows]}, 8 writers and 1 million rows by default.
+ * </p>
+ */
+public class PersistenceBenchmark {
+
+    private static final String[] CATEGORIES = {"food", "travel", "bills", "entertainment", "other"};
+    private static final int APPENDS_PER_WRITER = 50_000;
+
+    public static void main(String[] args) throws Exception {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Path file = Files.createTempFile("expenses", ".wal");
+        try {
+            for (int run = 1; run <= 3; run++) {
+                Files.write(file, new byte[0]);
+                groupCommit(file, writers, run);
+            }
+            for (int run = 1; run <= 3; run++) {
+                snapshot(file, rows, run);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void groupCommit(Path file, int writers, int run) throws Exception {
+        try (WriteAheadLog log = new WriteAheadLog(file, 2, TimeUnit.MILLISECONDS)) {
+            ExpenseTrackerModel model = new ExpenseTrackerModel(log);
+            List<Thread> threads = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < writers; t++) {
+                Thread writer = new Thread(() -> {
+                    // Batches of 100 share one wait for the disk
+                    List<Transaction> batch = new ArrayList<>();
+                    for (int i = 0; i < APPENDS_PER_WRITER; i++) {
+                        batch.add(new Transaction(1 + i % 999, CATEGORIES[i % CATEGORIES.length]));
+                        if (batch.size() == 100) {
+                            model.addTransactions(batch);
+                            batch.clear();
+                        }
+                    }
+                });
+                threads.add(writer);
+                writer.start();
+            }
+            for (Thread writer : threads) {
+                writer.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("run %d: %d writers, %.0f durable appends/s%n", run, writers,
+                writers * APPENDS_PER_WRITER / seconds);
+        }
+    }
+
+    private static void snapshot(Path file, int rows, int run) throws IOException {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        List<Transaction> batch = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Transaction(1 + i % 1000, CATEGORIES[i % CATEGORIES.length]));
+        }
+        model.addTransactions(batch);
+        long start = System.nanoTime();
+        model.saveSnapshot(file);
+        long written = System.nanoTime();
+        ExpenseTrackerModel reopened = ExpenseTrackerModel.openSnapshot(file);
+        long opened = System.nanoTime();
+        if (reopened.getSnapshot().size() != rows) {
+            throw new AssertionError("The snapshot lost rows");
+        }
+        System.out.printf("run %d: snapshot of %d rows, write %d ms, open %d ms%n", run, rows,
+            (written - start) / 1_000_000, (opened - written) / 1_000_000);
+    }
+}
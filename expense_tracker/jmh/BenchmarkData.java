@@ -0,0 +1,44 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+
+/**
+ * Fills models with the same deterministic ledger for every benchmark.
+ */
+final class BenchmarkData {
+
+    static final String[] CATEGORIES = {"food", "travel", "bills", "entertainment", "other"};
+    // Added in batches, so that building the largest ledgers does not hold every transaction twice
+    private static final int BATCH_SIZE = 1 << 20;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param rows The number of transactions.
+     * @return A new model holding that many transactions.
+     */
+    static ExpenseTrackerModel model(int rows) {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        List<Transaction> batch = new ArrayList<>(Math.min(rows, BATCH_SIZE));
+        for (int i = 0; i < rows; i++) {
+            batch.add(transaction(i));
+            if (batch.size() == BATCH_SIZE) {
+                model.addTransactions(batch);
+                batch.clear();
+            }
+        }
+        model.addTransactions(batch);
+        return model;
+    }
+
+    /**
+     * @param i The row of the transaction.
+     * @return The transaction of that row, amounts spread over 1 to 999.
+     */
+    static Transaction transaction(int i) {
+        return new Transaction(1 + (i * 7919L) % 999, CATEGORIES[i % CATEGORIES.length]);
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controller.ExpenseTrackerController;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.Filter.CategoryFilter;
+import view.ExpenseTrackerView;
+
+/**
+ * {@link ExpenseTrackerController#applyFilter()} and {@link ExpenseTrackerView#refreshTable(List)},
+ * the work done on the event dispatch thread. The view is a window, so this needs a display.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ControllerBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    public int rows;
+
+    private ExpenseTrackerModel model;
+    private ExpenseTrackerView view;
+    private ExpenseTrackerController controller;
+
+    @Setup
+    public void setup() {
+        model = BenchmarkData.model(rows);
+        view = new ExpenseTrackerView();
+        controller = new ExpenseTrackerController(model, view);
+        controller.setFilter(new CategoryFilter("travel"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        view.dispose();
+    }
+
+    @Benchmark
+    public ExpenseTrackerView applyFilter() {
+        controller.applyFilter();
+        return view;
+    }
+
+    @Benchmark
+    public ExpenseTrackerView refreshTable() {
+        List<Transaction> transactions = model.getTransactions();
+        view.refreshTable(transactions);
+        return view;
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.Transaction;
+import model.Filter.AmountFilter;
+import model.Filter.CategoryFilter;
+
+/**
+ * {@link AmountFilter#filter(List)} and {@link CategoryFilter#filter(List)} on a model snapshot,
+ * which is answered from the indexes, and on a plain list, which has to be scanned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class FilterScanBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    public int rows;
+
+    private List<Transaction> snapshot;
+    private List<Transaction> list;
+    private final AmountFilter amountFilter = new AmountFilter(500);
+    private final CategoryFilter categoryFilter = new CategoryFilter("travel");
+
+    @Setup
+    public void setup() {
+        snapshot = BenchmarkData.model(rows).getTransactions();
+        list = new ArrayList<>(snapshot);
+    }
+
+    @Benchmark
+    public List<Transaction> amountFilterSnapshot() {
+        return amountFilter.filter(snapshot);
+    }
+
+    @Benchmark
+    public List<Transaction> amountFilterList() {
+        return amountFilter.filter(list);
+    }
+
+    @Benchmark
+    public List<Transaction> categoryFilterSnapshot() {
+        return categoryFilter.filter(snapshot);
+    }
+
+    @Benchmark
+    public List<Transaction> categoryFilterList() {
+        return categoryFilter.filter(list);
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+
+/**
+ * Adding to and reading from the model at different ledger sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ModelBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    public int rows;
+
+    private ExpenseTrackerModel model;
+    // Row of the next added transaction, every add stores a new transaction with its own id
+    private int next;
+
+    // Every iteration starts from the same size, adds only grow the ledger within an iteration
+    @Setup(Level.Iteration)
+    public void setup() {
+        model = BenchmarkData.model(rows);
+        next = rows;
+    }
+
+    @Benchmark
+    public ExpenseTrackerModel addTransaction() {
+        model.addTransaction(BenchmarkData.transaction(next++));
+        return model;
+    }
+
+    @Benchmark
+    public List<Transaction> getTransactions() {
+        return model.getTransactions();
+    }
+
+    @Benchmark
+    public Transaction getTransactionsAfterAdd() {
+        // The first read after a change takes a new snapshot
+        model.addTransaction(BenchmarkData.transaction(next++));
+        List<Transaction> transactions = model.getTransactions();
+        return transactions.get(transactions.size() - 1);
+    }
+}
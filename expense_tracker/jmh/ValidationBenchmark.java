@@ -0,0 +1,53 @@
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controller.InputValidation;
+
+/**
+ * {@link InputValidation}, which runs for every added, imported and filtered value.
+ * Its cost does not depend on the size of the ledger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    // Fields rather than constants, so that the JIT cannot fold the checks away
+    public double amount = 123.45;
+    public String category = "Entertainment";
+    public String invalidCategory = "entertainment1";
+    public byte[] line = "123.45,Entertainment,1700000000000".getBytes(StandardCharsets.US_ASCII);
+
+    @Benchmark
+    public boolean isValidAmount() {
+        return InputValidation.isValidAmount(amount);
+    }
+
+    @Benchmark
+    public boolean isValidCategory() {
+        return InputValidation.isValidCategory(category);
+    }
+
+    @Benchmark
+    public boolean isValidCategoryRejected() {
+        return InputValidation.isValidCategory(invalidCategory);
+    }
+
+    @Benchmark
+    public String validCategoryBytes() {
+        return InputValidation.validCategory(line, 7, 13);
+    }
+}
@@ -1,6 +1,16 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
 import javax.swing.JOptionPane;
 import controller.ExpenseTrackerController;
+import metrics.Metrics;
 import model.ExpenseTrackerModel;
+import model.Persistence.CsvImporter;
+import model.Persistence.WriteAheadLog;
 import view.ExpenseTrackerView;
 import model.Filter.AmountFilter;
 import model.Filter.CategoryFilter;
@@ -11,15 +21,38 @@ import model.Filter.CategoryFilter;
  */
 public class ExpenseTrackerApp {
 
+  /**
+   * System property naming the write-ahead log file. Without it the transactions are only kept in memory.
+   */
+  public static final String WAL_PROPERTY = "expensetracker.wal";
+  /**
+   * System property naming a binary snapshot file, opened on startup and rewritten on exit.
+   * It is only used when no write-ahead log is configured.
+   */
+  public static final String SNAPSHOT_PROPERTY = "expensetracker.snapshot";
+  /**
+   * System property naming a CSV file of historical transactions, imported on startup.
+   * Files ending in ".tsv" are read as tab separated.
+   */
+  public static final String IMPORT_PROPERTY = "expensetracker.import";
+  // How long a change may wait for others to share its fsync
+  private static final long WAL_MAX_LATENCY_MILLIS = 5;
+
   /**
    * @param args
    */
   public static void main(String[] args) {
     
     // Create MVC components
-    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    ExpenseTrackerModel model = createModel();
     ExpenseTrackerView view = new ExpenseTrackerView();
     ExpenseTrackerController controller = new ExpenseTrackerController(model, view);
+    if (Metrics.ENABLED) {
+      Metrics.register(() -> model.getSnapshot().size(), model::getEstimatedHeapBytes);
+    }
+    // The view follows the model, changes made off the event dispatch thread, e.g. by the import,
+    // are shown once per frame
+    importTransactions(controller);
     
 
     // Initialize view
@@ -50,7 +83,7 @@ public class ExpenseTrackerApp {
       if (categoryFilterInput != null) {
           // controller.applyCategoryFilter(categoryFilterInput);
           controller.setFilter(categoryFilter);
-          controller.applyFilter();
+          controller.applyFilterAsync();
       }
      }catch(IllegalArgumentException exception) {
     JOptionPane.showMessageDialog(view, exception.getMessage());
@@ -65,7 +98,7 @@ public class ExpenseTrackerApp {
       AmountFilter amountFilter = new AmountFilter(amountFilterInput);
       if (amountFilterInput != 0.0) {
           controller.setFilter(amountFilter);
-          controller.applyFilter();
+          controller.applyFilterAsync();
       }
     }catch(IllegalArgumentException exception) {
     JOptionPane.showMessageDialog(view,exception.getMessage());
@@ -77,7 +110,81 @@ public class ExpenseTrackerApp {
     int[] rowSelected = view.getTransactionsTable().getSelectedRows();
     controller.removeTransaction(rowSelected);
   });
+
+   // Undo and redo the last changes, whatever rows are selected
+   view.addUndoLastListener(e -> controller.undo());
+   view.addRedoListener(e -> controller.redo());
     
 
   }
+
+  /**
+   * Creates the model, replaying the write-ahead log or opening the snapshot file if one is configured.
+   */
+  private static ExpenseTrackerModel createModel() {
+    String walPath = System.getProperty(WAL_PROPERTY);
+    String snapshotPath = System.getProperty(SNAPSHOT_PROPERTY);
+    if (walPath == null && snapshotPath != null) {
+      return openSnapshot(Paths.get(snapshotPath));
+    }
+    if (walPath == null) {
+      return new ExpenseTrackerModel();
+    }
+    try {
+      WriteAheadLog log = new WriteAheadLog(Paths.get(walPath), WAL_MAX_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          log.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }));
+      return new ExpenseTrackerModel(log);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot open the write-ahead log " + walPath, e);
+    }
+  }
+
+  /**
+   * Opens the model from a snapshot file if it exists, and saves it back to the file on exit.
+   */
+  private static ExpenseTrackerModel openSnapshot(Path path) {
+    try {
+      ExpenseTrackerModel model = Files.exists(path) ? ExpenseTrackerModel.openSnapshot(path) : new ExpenseTrackerModel();
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          model.saveSnapshot(path);
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }));
+      return model;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot open the snapshot " + path, e);
+    }
+  }
+
+  /**
+   * Imports the file named by the import property, if any, reporting the lines which were skipped.
+   * The import is recorded by the controller, so it can be undone.
+   */
+  private static void importTransactions(ExpenseTrackerController controller) {
+    String importPath = System.getProperty(IMPORT_PROPERTY);
+    if (importPath == null) {
+      return;
+    }
+    CsvImporter importer = new CsvImporter();
+    if (importPath.toLowerCase().endsWith(".tsv")) {
+      importer.setDelimiter('\t');
+    }
+    try {
+      CsvImporter.ImportReport report = controller.importTransactions(Paths.get(importPath), importer);
+      if (report.getRejectedCount() > 0) {
+        System.err.println("Skipped " + report.getRejectedCount() + " invalid lines of " + importPath);
+        report.getRejections().forEach(System.err::println);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot import " + importPath, e);
+    }
+  }
 }
@@ -0,0 +1,168 @@
+package controller;
+
+import java.util.Arrays;
+
+import model.Transaction;
+
+/**
+ * Bounded history of the changes made through the {@link ExpenseTrackerController}, for undo and redo.
+ * <p>
+ * Commands are kept in a ring buffer, so recording, undoing and redoing a command is O(1) and the
+ * oldest command is dropped once the buffer is full. A command only holds the transactions it
+ * added or removed, which are found again in the model by id, never by their row in the table.
+ * The number of transactions held by all commands is also bounded, so the memory used does not
+ * grow with the length of the session.
+ * </p>
+ */
+final class CommandJournal {
+
+  /**
+   * A change which can be undone: transactions which were added or removed together.
+   */
+  static final class Command {
+
+    private final boolean add;
+    private final Transaction[] transactions;
+
+    private Command(boolean add, Transaction[] transactions) {
+      this.add = add;
+      this.transactions = transactions;
+    }
+
+    /**
+     * @return {@code true} if the transactions were added, {@code false} if they were removed.
+     */
+    boolean isAdd() {
+      return add;
+    }
+
+    /**
+     * @return The transactions which were added or removed.
+     */
+    Transaction[] getTransactions() {
+      return transactions;
+    }
+  }
+
+  private final Command[] commands;
+  private final int maxTransactions;
+  // Index of the oldest command, followed by the commands to undo and then the commands to redo
+  private int oldest;
+  private int undoCount;
+  private int redoCount;
+  private int transactionCount;
+
+  /**
+   * @param capacity        The number of commands kept.
+   * @param maxTransactions The number of transactions kept by all commands together.
+   */
+  CommandJournal(int capacity, int maxTransactions) {
+    if (capacity < 1 || maxTransactions < 1) {
+      throw new IllegalArgumentException("The journal must hold at least one command.");
+    }
+    this.commands = new Command[capacity];
+    this.maxTransactions = maxTransactions;
+  }
+
+  /**
+   * Records a change, which discards the commands that could be redone. A change with more
+   * transactions than the journal can hold cannot be undone, so it clears the whole history.
+   *
+   * @param add          {@code true} if the transactions were added, {@code false} if they were removed.
+   * @param transactions The transactions.
+   */
+  void record(boolean add, Transaction[] transactions) {
+    if (transactions.length == 0) {
+      return;
+    }
+    dropRedo();
+    if (!fits(transactions.length)) {
+      clear();
+      return;
+    }
+    while (undoCount == commands.length || transactionCount + transactions.length > maxTransactions) {
+      transactionCount -= commands[oldest].transactions.length;
+      commands[oldest] = null;
+      oldest = next(oldest);
+      undoCount--;
+    }
+    commands[index(undoCount)] = new Command(add, transactions);
+    undoCount++;
+    transactionCount += transactions.length;
+  }
+
+  /**
+   * @param count A number of transactions.
+   * @return {@code true} if a change of that many transactions can be recorded.
+   */
+  boolean fits(int count) {
+    return count <= maxTransactions;
+  }
+
+  /**
+   * @return The last command which has not been undone, now to be redone next, or {@code null}.
+   */
+  Command undo() {
+    if (undoCount == 0) {
+      return null;
+    }
+    undoCount--;
+    redoCount++;
+    return commands[index(undoCount)];
+  }
+
+  /**
+   * @return The last undone command, now to be undone next, or {@code null}.
+   */
+  Command redo() {
+    if (redoCount == 0) {
+      return null;
+    }
+    Command command = commands[index(undoCount)];
+    undoCount++;
+    redoCount--;
+    return command;
+  }
+
+  /**
+   * @return {@code true} if there is a command to undo.
+   */
+  boolean canUndo() {
+    return undoCount > 0;
+  }
+
+  /**
+   * @return {@code true} if there is a command to redo.
+   */
+  boolean canRedo() {
+    return redoCount > 0;
+  }
+
+  /**
+   * Forgets all commands.
+   */
+  void clear() {
+    Arrays.fill(commands, null);
+    oldest = 0;
+    undoCount = 0;
+    redoCount = 0;
+    transactionCount = 0;
+  }
+
+  private void dropRedo() {
+    for (; redoCount > 0; redoCount--) {
+      int i = index(undoCount + redoCount - 1);
+      transactionCount -= commands[i].transactions.length;
+      commands[i] = null;
+    }
+  }
+
+  private int index(int offset) {
+    return (oldest + offset) % commands.length;
+  }
+
+  private int next(int i) {
+    return i + 1 == commands.length ? 0 : i + 1;
+  }
+
+}
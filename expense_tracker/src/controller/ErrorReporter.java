@@ -0,0 +1,17 @@
+package controller;
+
+/**
+ * Receives the errors of the {@link ExpenseTrackerController} which the user has to be told about.
+ * <p>
+ * The application shows them in a dialog, while a headless controller can log or count them.
+ * </p>
+ */
+@FunctionalInterface
+public interface ErrorReporter {
+
+  /**
+   * @param message The message describing the error.
+   */
+  void report(String message);
+
+}
@@ -2,31 +2,66 @@ package controller;
 
 import view.ExpenseTrackerView;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
+import metrics.Metrics;
+import model.BatchResult;
 import model.ExpenseTrackerModel;
 import model.Transaction;
+import model.TransactionSnapshot;
+import model.Persistence.CsvImporter;
+import model.Filter.FilterPlanner;
 import model.Filter.TransactionFilter;
 
 /**
  * Controller for the ExpenseTracker application.
  * <p>
  * This class is used to handle the user inputs, and interacting and updating the model.
+ * Adds, removes and imports are recorded in a bounded journal, so they can be undone and redone.
+ * </p>
+ * <p>
+ * Without a view the controller runs headless: it only updates the model, and errors go to an
+ * {@link ErrorReporter} instead of a dialog, e.g. to drive it from a load test on a server.
  * </p>
  */
 public class ExpenseTrackerController {
-  
+
+  // Number of changes which can be undone, and of transactions they may hold together
+  private static final int HISTORY_SIZE = 100;
+  private static final int HISTORY_TRANSACTIONS = 1 << 16;
+  // Java 17 has no virtual threads, a superseded filter is cancelled while the next one starts on another thread
+  private static final ExecutorService FILTER_EXECUTOR = Executors.newCachedThreadPool(r -> {
+    Thread thread = new Thread(r, "transaction-filter");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   private ExpenseTrackerModel model;
   private ExpenseTrackerView view;
+  private final ErrorReporter errors;
+  private final CommandJournal journal = new CommandJournal(HISTORY_SIZE, HISTORY_TRANSACTIONS);
   /** 
    * The Controller is applying the Strategy design pattern.
    * This is the has-a relationship with the Strategy class 
    * being used in the applyFilter method.
    */
   private TransactionFilter filter;
+  // Incremented by every filter, only the rows of the latest one are highlighted
+  private final AtomicLong filterGeneration = new AtomicLong();
+  private Future<BitSet> runningFilter;
 
   /**
    * Constructs a new ExpenseTrackerController with arguments as the model and view.
@@ -35,8 +70,32 @@ public class ExpenseTrackerController {
    * @param view  The view for this controller.
    */
   public ExpenseTrackerController(ExpenseTrackerModel model, ExpenseTrackerView view) {
+    this(model, view, message -> {
+      JOptionPane.showMessageDialog(view, message);
+      if (view != null) {
+        view.toFront();
+      }
+    });
+  }
+
+  /**
+   * Constructs a new ExpenseTrackerController which reports errors to the given callback.
+   * The view follows the changes of the model, so the controller never updates its table.
+   *
+   * @param model  The model for this controller.
+   * @param view   The view for this controller, or {@code null} to run headless.
+   * @param errors Receives the errors instead of a dialog.
+   */
+  public ExpenseTrackerController(ExpenseTrackerModel model, ExpenseTrackerView view, ErrorReporter errors) {
+    if (model == null || errors == null) {
+      throw new IllegalArgumentException("The model and the error reporter must be non-null.");
+    }
     this.model = model;
     this.view = view;
+    this.errors = errors;
+    if (view != null) {
+      view.follow(model);
+    }
   }
 
   public void setFilter(TransactionFilter filter) {
@@ -45,11 +104,14 @@ public class ExpenseTrackerController {
   }
 
   /**
-   * This is used to update the transactions view with any new inserted transactions.
+   * Shows all transactions in the view at once. Changes are shown as the model reports them,
+   * so this is only needed to redraw the table.
    */
   public void refresh() {
-    List<Transaction> transactions = model.getTransactions();
-    view.refreshTable(transactions);
+    if (view != null) {
+      List<Transaction> transactions = model.getTransactions();
+      view.refreshTable(transactions);
+    }
   }
 
   /**
@@ -69,52 +131,237 @@ public class ExpenseTrackerController {
     
     Transaction t = new Transaction(amount, category);
     model.addTransaction(t);
-    view.getTableModel().addRow(new Object[]{t.getAmount(), t.getCategory(), t.getTimestamp()});
-    refresh();
+    journal.record(true, new Transaction[] {t});
     return true;
   }
   
+  /**
+   * Adds a batch of transactions, validating all of them first, as one change of the model.
+   *
+   * @param transactions The transactions to be added.
+   * @return Which transactions were added, and why the others were rejected.
+   */
+  public BatchResult addTransactions(Collection<Transaction> transactions) {
+    List<Transaction> accepted = new ArrayList<>(transactions.size());
+    List<BatchResult.Rejection> rejections = new ArrayList<>();
+    int index = 0;
+    for (Transaction t : transactions) {
+      if (t == null) {
+        rejections.add(new BatchResult.Rejection(index, "The new transaction must be non-null."));
+      } else if (!InputValidation.isValidAmount(t.getAmount())) {
+        rejections.add(new BatchResult.Rejection(index, "The amount is not valid."));
+      } else if (!InputValidation.isValidCategory(t.getCategory())) {
+        rejections.add(new BatchResult.Rejection(index, "The category is not valid."));
+      } else {
+        accepted.add(t);
+      }
+      index++;
+    }
+
+    BatchResult added = model.addTransactions(accepted);
+    if (added.getAddedCount() > 0) {
+      journal.record(true, accepted.toArray(new Transaction[0]));
+    }
+    return new BatchResult(added.getFirstRow(), added.getAddedCount(), rejections);
+  }
+  
   /**
    * Applies a amount or category filter to the transactions based on the view selected by the user.
+   * The filter runs on the calling thread, and supersedes a filter still running in the background.
    */
   public void applyFilter() {
     //null check for filter
     if(filter!=null){
+      long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+      supersedeFilter();
       // Use the Strategy class to perform the desired filtering
-      List<Transaction> transactions = model.getTransactions();
-      List<Transaction> filteredTransactions = filter.filter(transactions);
-      List<Integer> rowIndexes = new ArrayList<>();
-      for (Transaction t : filteredTransactions) {
-        int rowIndex = transactions.indexOf(t);
-        if (rowIndex != -1) {
-          rowIndexes.add(rowIndex);
-        }
+      BitSet rows = FilterPlanner.filterRows(filter, model.getTransactions());
+      if (Metrics.ENABLED) {
+        Metrics.APPLY_FILTER.recordSince(start);
+      }
+      if (view != null) {
+        view.highlightRows(rows);
       }
-      view.highlightRows(rowIndexes);
     }
     else{
-      JOptionPane.showMessageDialog(view, "No filter applied");
-      view.toFront();}
+      errors.report("No filter applied");}
 
   }
 
   /**
-   * Removes a transaction selected by the user, checks if undo button is invalid or not as well
-   * @param row the indice of the row for which transactions will be removed
+   * Applies the filter like {@link #applyFilter()}, but on a background thread so that the event
+   * dispatch thread stays responsive on a large ledger. The rows are highlighted on the event
+   * dispatch thread once they are found. A filter still running is cancelled, and the rows of a
+   * filter are never highlighted after those of a newer one. If the table changed while the filter
+   * ran, its rows are not highlighted and the filter runs again on the rows shown.
+   *
+   * @return The rows matching the filter, or {@code null} if no filter is set.
+   */
+  public Future<BitSet> applyFilterAsync() {
+    if (filter == null) {
+      errors.report("No filter applied");
+      return null;
+    }
+    return runFilterAsync(filter, Metrics.ENABLED ? System.nanoTime() : 0L);
+  }
+
+  private Future<BitSet> runFilterAsync(TransactionFilter current, long start) {
+    long generation = supersedeFilter();
+    TransactionSnapshot transactions = model.getSnapshot();
+    runningFilter = FILTER_EXECUTOR.submit(() -> {
+      BitSet rows = FilterPlanner.filterRows(current, transactions);
+      if (view != null) {
+        SwingUtilities.invokeLater(() -> {
+          // Checked on the event dispatch thread, where newer filters are started
+          if (generation != filterGeneration.get()) {
+            return;
+          }
+          view.flushTableUpdates();
+          long shown = view.getTableModel().getVersion();
+          if (shown >= 0 && shown != transactions.getVersion()) {
+            // The rows found no longer match the positions in the table
+            runFilterAsync(current, start);
+            return;
+          }
+          if (Metrics.ENABLED) {
+            // Includes the wait for a thread, which the user also waits for
+            Metrics.APPLY_FILTER.recordSince(start);
+          }
+          view.highlightRows(rows);
+        });
+      } else if (Metrics.ENABLED) {
+        Metrics.APPLY_FILTER.recordSince(start);
+      }
+      return rows;
+    });
+    return runningFilter;
+  }
+
+  // Cancels the filter running in the background, and makes sure its rows are not highlighted
+  private long supersedeFilter() {
+    if (runningFilter != null) {
+      runningFilter.cancel(true);
+      runningFilter = null;
+    }
+    return filterGeneration.incrementAndGet();
+  }
+
+  /**
+   * Removes the transactions selected by the user, checks if undo button is invalid or not as well
+   * @param row the ascending indices of the rows for which transactions will be removed
    */
   public void removeTransaction(int[] row) {
     if (!(row.length < 1)) {
-      Transaction t = model.getTransactions().get(row[0]);
-      model.removeTransaction(t);
-      refresh();
+      // Remove all selected rows by id in one change, the total row is not a transaction
+      TransactionSnapshot transactions = model.getSnapshot();
+      long[] ids = new long[row.length];
+      Transaction[] removed = new Transaction[row.length];
+      int count = 0;
+      for (int r : row) {
+        if (r >= 0 && r < transactions.size()) {
+          removed[count] = transactions.get(r);
+          ids[count] = removed[count].getId();
+          count++;
+        }
+      }
+      if (count == 0) {
+        return;
+      }
+      model.removeTransactions(Arrays.copyOf(ids, count));
+      journal.record(false, Arrays.copyOf(removed, count));
     } else if(row.length < 1 && model.getTransactions().size()>0){
-      JOptionPane.showMessageDialog(view, "Undo Disallowed, Select a row");
+      errors.report("Undo Disallowed, Select a row");
       throw new IllegalArgumentException("Undo Disallowed.");
     }
     else {
-      JOptionPane.showMessageDialog(view, "Undo Disallowed.");
+      errors.report("Undo Disallowed.");
       throw new IllegalArgumentException("Undo Disallowed.");
     }
   }
 
+  /**
+   * Imports the transactions of a CSV file as one change, so the whole import can be undone.
+   * An import too large for the history is not recorded and clears it.
+   *
+   * @param path     The file to import.
+   * @param importer The importer, configured for the format of the file.
+   * @return The number of imported transactions and the rejected lines.
+   * @throws IOException if the file cannot be read.
+   */
+  public CsvImporter.ImportReport importTransactions(Path path, CsvImporter importer) throws IOException {
+    List<Transaction> imported = new ArrayList<>();
+    boolean[] recorded = {true};
+    CsvImporter.ImportReport report = importer.importFile(path, batch -> {
+      model.addTransactions(batch);
+      if (recorded[0] && journal.fits(imported.size() + batch.size())) {
+        imported.addAll(batch);
+      } else {
+        recorded[0] = false;
+        imported.clear();
+      }
+    });
+    if (recorded[0]) {
+      journal.record(true, imported.toArray(new Transaction[0]));
+    } else {
+      journal.clear();
+    }
+    return report;
+  }
+
+  /**
+   * Undoes the last add, remove or import which has not been undone yet.
+   * Removed transactions are restored in their previous rows until those are compacted away.
+   *
+   * @return {@code true} if a change was undone, {@code false} if there is nothing to undo.
+   */
+  public boolean undo() {
+    CommandJournal.Command command = journal.undo();
+    if (command == null) {
+      return false;
+    }
+    apply(command, !command.isAdd());
+    return true;
+  }
+
+  /**
+   * Redoes the last undone change, as long as no other change was made since.
+   *
+   * @return {@code true} if a change was redone, {@code false} if there is nothing to redo.
+   */
+  public boolean redo() {
+    CommandJournal.Command command = journal.redo();
+    if (command == null) {
+      return false;
+    }
+    apply(command, command.isAdd());
+    return true;
+  }
+
+  /**
+   * @return {@code true} if there is a change to undo.
+   */
+  public boolean canUndo() {
+    return journal.canUndo();
+  }
+
+  /**
+   * @return {@code true} if there is a change to redo.
+   */
+  public boolean canRedo() {
+    return journal.canRedo();
+  }
+
+  private void apply(CommandJournal.Command command, boolean add) {
+    Transaction[] transactions = command.getTransactions();
+    if (add) {
+      model.restoreTransactions(Arrays.asList(transactions));
+    } else {
+      long[] ids = new long[transactions.length];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = transactions[i].getId();
+      }
+      model.removeTransactions(ids);
+    }
+  }
+
 }
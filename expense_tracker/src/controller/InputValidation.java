@@ -1,10 +1,13 @@
 package controller;
 
-import java.util.Arrays;
+import model.CategoryRegistry;
+
 /**
  * This class provides static methods to run validations against the entered amounts and categories.
+ * Categories are looked up in the {@link CategoryRegistry}, without allocating.
  */
 public class InputValidation {
+
   /**
    * Validates if the provided amount is within acceptable limits.
    *
@@ -23,37 +26,33 @@ public class InputValidation {
     if (amount == 0){
       return false;
     }
+    // Not a number fails every comparison above
+    if (Double.isNaN(amount)) {
+      return false;
+    }
     return true;
   }
   /**
-   * Validates if the provided category matches with the predefined valid Words.
+   * Validates if the provided category matches a registered category, ignoring case.
    *
    * @param category The category string to be validated.
    * @return {@code true} if the category is valid; {@code false} otherwise.
    */
   public static boolean isValidCategory(String category) {
+    return CategoryRegistry.codeOf(category) != CategoryRegistry.UNKNOWN;
+  }
 
-    if(category == null) {
-      return false; 
-    }
-  
-    if(category.trim().isEmpty()) {
-      return false;
-    }
-
-    if(!category.matches("[a-zA-Z]+")) {
-      return false;
-    }
-
-    String[] validWords = {"food", "travel", "bills", "entertainment", "other"};
-
-    if(!Arrays.asList(validWords).contains(category.toLowerCase())) {
-      // invalid word  
-      return false;
-    }
-  
-    return true;
-  
+  /**
+   * Validates a category given as ASCII bytes, e.g. a field of an imported file, without creating a string.
+   *
+   * @param bytes  The buffer holding the category.
+   * @param offset The position of the first byte of the category.
+   * @param length The number of bytes of the category.
+   * @return The registered category matching ignoring case, in lower case, or {@code null} if the category is not valid.
+   */
+  public static String validCategory(byte[] bytes, int offset, int length) {
+    int code = CategoryRegistry.codeOf(bytes, offset, length);
+    return code == CategoryRegistry.UNKNOWN ? null : CategoryRegistry.name(code);
   }
 
-}
\ No newline at end of file
+}
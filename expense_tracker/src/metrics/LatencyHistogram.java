@@ -0,0 +1,127 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies of one operation, recorded by any number of threads without locking.
+ * <p>
+ * Like an HdrHistogram with one significant digit, each power of two is split into eight
+ * buckets, so a percentile is off by at most 12.5%, from 1 ns to over an hour. Recording a
+ * latency increments one counter and allocates nothing.
+ * </p>
+ */
+public final class LatencyHistogram implements LatencyMXBean {
+
+  private static final int SUB_BUCKETS = 8;
+  private static final int BUCKETS = 42 * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records the latency of an operation.
+   *
+   * @param nanos The latency in nanoseconds.
+   */
+  public void record(long nanos) {
+    nanos = Math.max(1, nanos);
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    // The next three bits below the leading one pick the sub-bucket
+    int sub = exponent >= 3 ? (int) (nanos >>> (exponent - 3)) & (SUB_BUCKETS - 1) : 0;
+    counts.incrementAndGet(Math.min(BUCKETS - 1, exponent * SUB_BUCKETS + sub));
+    count.increment();
+    totalNanos.add(nanos);
+    // Only contended while the maximum still grows
+    long current = max.get();
+    while (nanos > current && !max.compareAndSet(current, nanos)) {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Records the latency of an operation which started at the given time.
+   *
+   * @param startNanos The {@link System#nanoTime()} when the operation started.
+   */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * @param quantile The quantile, from 0 to 1.
+   * @return The upper bound of the bucket holding the quantile in nanoseconds, or 0 if nothing was recorded.
+   */
+  public long percentile(double quantile) {
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        int exponent = i / SUB_BUCKETS;
+        long upper = exponent >= 3 ? (long) (SUB_BUCKETS + i % SUB_BUCKETS + 1) << (exponent - 3) : 1L << (exponent + 1);
+        return Math.min(upper, max.get());
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public long getCount() {
+    return count.sum();
+  }
+
+  @Override
+  public double getMeanMicros() {
+    long n = count.sum();
+    return n == 0 ? 0 : totalNanos.sum() / 1e3 / n;
+  }
+
+  @Override
+  public double getP50Micros() {
+    return percentile(0.5) / 1e3;
+  }
+
+  @Override
+  public double getP90Micros() {
+    return percentile(0.9) / 1e3;
+  }
+
+  @Override
+  public double getP99Micros() {
+    return percentile(0.99) / 1e3;
+  }
+
+  @Override
+  public double getP999Micros() {
+    return percentile(0.999) / 1e3;
+  }
+
+  @Override
+  public double getMaxMicros() {
+    return max.get() / 1e3;
+  }
+
+  /**
+   * Forgets all latencies. Operations recorded while resetting may be partly kept.
+   */
+  @Override
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+    count.reset();
+    totalNanos.reset();
+    max.set(0);
+  }
+
+}
@@ -0,0 +1,49 @@
+package metrics;
+
+/**
+ * Management interface of the latencies of one operation, see {@link LatencyHistogram}.
+ * Percentiles are accurate to 12.5%.
+ */
+public interface LatencyMXBean {
+
+  /**
+   * @return The number of operations recorded.
+   */
+  long getCount();
+
+  /**
+   * @return The mean latency in microseconds.
+   */
+  double getMeanMicros();
+
+  /**
+   * @return The median latency in microseconds.
+   */
+  double getP50Micros();
+
+  /**
+   * @return The 90th percentile latency in microseconds.
+   */
+  double getP90Micros();
+
+  /**
+   * @return The 99th percentile latency in microseconds.
+   */
+  double getP99Micros();
+
+  /**
+   * @return The 99.9th percentile latency in microseconds.
+   */
+  double getP999Micros();
+
+  /**
+   * @return The highest latency in microseconds.
+   */
+  double getMaxMicros();
+
+  /**
+   * Forgets all latencies, e.g. to measure from now on.
+   */
+  void reset();
+
+}
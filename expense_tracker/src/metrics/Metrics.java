@@ -0,0 +1,145 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Built-in latency metrics of the model, the filters and the view, exposed as JMX MBeans in the
+ * {@value #DOMAIN} domain.
+ * <p>
+ * Metrics are off unless the JVM is started with {@code -D}{@value #PROPERTY}{@code =true}.
+ * Call sites check {@link #ENABLED} before reading the clock, and since it is a constant the
+ * JIT removes the checks when metrics are off, so instrumented code runs as fast as before.
+ * </p>
+ */
+public final class Metrics {
+
+  /**
+   * System property which enables the metrics.
+   */
+  public static final String PROPERTY = "expensetracker.metrics";
+  /**
+   * JMX domain of the MBeans.
+   */
+  public static final String DOMAIN = "expensetracker";
+  /**
+   * {@code true} if latencies are recorded.
+   */
+  public static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+  /**
+   * Latencies of adding a single transaction to the model.
+   */
+  public static final LatencyHistogram ADD_TRANSACTION = new LatencyHistogram();
+  /**
+   * Latencies of removing transactions from the model.
+   */
+  public static final LatencyHistogram REMOVE_TRANSACTION = new LatencyHistogram();
+  /**
+   * Latencies of applying a filter through the controller, until the matching rows are found.
+   */
+  public static final LatencyHistogram APPLY_FILTER = new LatencyHistogram();
+  /**
+   * Latencies of refreshing the table of the view.
+   */
+  public static final LatencyHistogram REFRESH_TABLE = new LatencyHistogram();
+
+  // Latencies of each type of filter, by class name
+  private static final Map<String, LatencyHistogram> FILTERS = new ConcurrentHashMap<>();
+  private static MBeanServer server;
+
+  private Metrics() {
+  }
+
+  /**
+   * @param filterType The class of a filter.
+   * @return The latencies of filters of that class, named by its simple name, or by its full
+   *         name if it is anonymous or a lambda.
+   */
+  public static LatencyHistogram filter(Class<?> filterType) {
+    String type = filterType.getSimpleName();
+    if (type.isEmpty()) {
+      type = filterType.getName();
+    }
+    LatencyHistogram histogram = FILTERS.get(type);
+    return histogram != null ? histogram : newFilter(type);
+  }
+
+  /**
+   * Registers the MBeans with the platform MBean server, replacing those registered before,
+   * so the metrics can be read with e.g. JConsole or VisualVM.
+   *
+   * @param rowCount  Supplies the number of transactions in the model.
+   * @param heapBytes Supplies the estimated heap used by the model.
+   */
+  public static synchronized void register(IntSupplier rowCount, LongSupplier heapBytes) {
+    server = ManagementFactory.getPlatformMBeanServer();
+    register(objectName("Model", null), new ModelMXBean() {
+      @Override
+      public int getRowCount() {
+        return rowCount.getAsInt();
+      }
+
+      @Override
+      public long getEstimatedHeapBytes() {
+        return heapBytes.getAsLong();
+      }
+    });
+    register(objectName("Latency", "addTransaction"), ADD_TRANSACTION);
+    register(objectName("Latency", "removeTransaction"), REMOVE_TRANSACTION);
+    register(objectName("Latency", "applyFilter"), APPLY_FILTER);
+    register(objectName("Latency", "refreshTable"), REFRESH_TABLE);
+    for (Map.Entry<String, LatencyHistogram> entry : FILTERS.entrySet()) {
+      register(filterName(entry.getKey()), entry.getValue());
+    }
+  }
+
+  /**
+   * @param type The type of an MBean, "Model" or "Latency".
+   * @param name The name of a latency MBean, or {@code null} for the model.
+   * @return The name the MBean is registered under.
+   */
+  public static ObjectName objectName(String type, String name) {
+    try {
+      return new ObjectName(DOMAIN + ":type=" + type + (name == null ? "" : ",name=" + name));
+    } catch (JMException e) {
+      throw new IllegalArgumentException("Invalid MBean name " + name, e);
+    }
+  }
+
+  // Filter types are only known once used, their MBean is registered on first use
+  private static synchronized LatencyHistogram newFilter(String type) {
+    LatencyHistogram histogram = FILTERS.get(type);
+    if (histogram == null) {
+      histogram = new LatencyHistogram();
+      FILTERS.put(type, histogram);
+      if (server != null) {
+        register(filterName(type), histogram);
+      }
+    }
+    return histogram;
+  }
+
+  private static ObjectName filterName(String type) {
+    return objectName("Latency", "filter." + type);
+  }
+
+  private static void register(ObjectName name, Object mbean) {
+    try {
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(mbean, name);
+    } catch (JMException e) {
+      throw new IllegalStateException("Could not register MBean " + name, e);
+    }
+  }
+
+}
@@ -0,0 +1,18 @@
+package metrics;
+
+/**
+ * Management interface of the size of the expense tracker model.
+ */
+public interface ModelMXBean {
+
+  /**
+   * @return The number of transactions in the model.
+   */
+  int getRowCount();
+
+  /**
+   * @return The estimated heap used by the columns and indexes of the model, in bytes.
+   */
+  long getEstimatedHeapBytes();
+
+}
@@ -0,0 +1,193 @@
+package model;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Running totals of the {@link TransactionStore}, updated in O(1) by every add and remove,
+ * and the smallest and largest amount, updated in O(log n).
+ * <p>
+ * Sums use Neumaier's compensated summation, so a total stays accurate to the last cent even
+ * after millions of adds and removes. Totals and counts are also kept per category code.
+ * The smallest and largest amount are tracked directly and looked up again in a sorted map of
+ * the number of rows per amount when one of them is removed.
+ * </p>
+ * <p>
+ * The store updates its aggregates under the write lock, and every snapshot gets a copy.
+ * </p>
+ */
+final class Aggregates {
+
+  private final Sum total = new Sum();
+  private int count;
+  private double min = Double.NaN;
+  private double max = Double.NaN;
+  // Number of rows per amount, only kept by the aggregates of the store, not by their copies
+  private final TreeMap<Double, Integer> amountCounts;
+
+  // Indexed by category code
+  private Sum[] categoryTotals = new Sum[8];
+  private int[] categoryCounts = new int[8];
+
+  Aggregates() {
+    this(new TreeMap<>());
+  }
+
+  private Aggregates(TreeMap<Double, Integer> amountCounts) {
+    this.amountCounts = amountCounts;
+  }
+
+  /**
+   * Records an added row.
+   *
+   * @param code   The category code of the row.
+   * @param amount The amount of the row.
+   */
+  void add(int code, double amount) {
+    total.add(amount);
+    count++;
+    if (count == 1 || amount < min) {
+      min = amount;
+    }
+    if (count == 1 || amount > max) {
+      max = amount;
+    }
+    amountCounts.merge(amount, 1, Integer::sum);
+    if (code >= categoryCounts.length) {
+      int length = Math.max(code + 1, categoryCounts.length << 1);
+      categoryTotals = Arrays.copyOf(categoryTotals, length);
+      categoryCounts = Arrays.copyOf(categoryCounts, length);
+    }
+    if (categoryTotals[code] == null) {
+      categoryTotals[code] = new Sum();
+    }
+    categoryTotals[code].add(amount);
+    categoryCounts[code]++;
+  }
+
+  /**
+   * Records a removed row.
+   *
+   * @param code   The category code of the row.
+   * @param amount The amount of the row.
+   */
+  void remove(int code, double amount) {
+    count--;
+    amountCounts.computeIfPresent(amount, (key, rows) -> rows == 1 ? null : rows - 1);
+    total.add(-amount);
+    categoryTotals[code].add(-amount);
+    categoryCounts[code]--;
+    if (count == 0) {
+      // Start over instead of keeping the rounding residue of the removed amounts
+      total.clear();
+      min = Double.NaN;
+      max = Double.NaN;
+    } else if (amount == min || amount == max) {
+      min = amountCounts.firstKey();
+      max = amountCounts.lastKey();
+    }
+    if (categoryCounts[code] == 0) {
+      categoryTotals[code].clear();
+    }
+  }
+
+  /**
+   * @return An independent copy of the current aggregates, for a snapshot.
+   */
+  Aggregates copy() {
+    // Snapshots only read the minimum and maximum, so they do not need the counts per amount
+    Aggregates copy = new Aggregates(null);
+    copy.total.set(total);
+    copy.count = count;
+    copy.min = min;
+    copy.max = max;
+    copy.categoryTotals = new Sum[categoryTotals.length];
+    for (int code = 0; code < categoryTotals.length; code++) {
+      if (categoryTotals[code] != null) {
+        copy.categoryTotals[code] = new Sum();
+        copy.categoryTotals[code].set(categoryTotals[code]);
+      }
+    }
+    copy.categoryCounts = categoryCounts.clone();
+    return copy;
+  }
+
+  /**
+   * @return The sum of all amounts.
+   */
+  double total() {
+    return total.value();
+  }
+
+  /**
+   * @return The number of rows.
+   */
+  int count() {
+    return count;
+  }
+
+  /**
+   * @return The smallest amount, or {@code NaN} if there are no rows.
+   */
+  double min() {
+    return min;
+  }
+
+  /**
+   * @return The largest amount, or {@code NaN} if there are no rows.
+   */
+  double max() {
+    return max;
+  }
+
+  /**
+   * @param code A category code.
+   * @return The sum of the amounts of that category.
+   */
+  double categoryTotal(int code) {
+    return code < categoryTotals.length && categoryTotals[code] != null ? categoryTotals[code].value() : 0;
+  }
+
+  /**
+   * @param code A category code.
+   * @return The number of rows of that category.
+   */
+  int categoryCount(int code) {
+    return code < categoryCounts.length ? categoryCounts[code] : 0;
+  }
+
+  /**
+   * Neumaier's variant of Kahan summation, which also compensates when an added value
+   * is larger than the running sum.
+   */
+  static final class Sum {
+
+    private double sum;
+    private double compensation;
+
+    void add(double value) {
+      double t = sum + value;
+      if (Math.abs(sum) >= Math.abs(value)) {
+        compensation += (sum - t) + value;
+      } else {
+        compensation += (value - t) + sum;
+      }
+      sum = t;
+    }
+
+    double value() {
+      return sum + compensation;
+    }
+
+    void set(Sum other) {
+      sum = other.sum;
+      compensation = other.compensation;
+    }
+
+    void clear() {
+      sum = 0;
+      compensation = 0;
+    }
+  }
+
+}
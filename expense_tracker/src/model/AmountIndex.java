@@ -0,0 +1,209 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Sorted index from amount to row, maintained by the {@link TransactionStore} to answer range queries.
+ * <p>
+ * Appended rows are first collected in an unsorted tail, so adding a transaction stays O(1).
+ * Queries scan the tail linearly, and only once it outgrows the square root of the sorted rows
+ * is it sorted and merged in place into their spare capacity. A query after a few adds thus
+ * stays O(log n + k), and the cost of merging is amortized over the adds.
+ * </p>
+ * <p>
+ * Rows are the slots of the store. Removed slots stay in the index until the store is
+ * compacted, so callers skip them.
+ * </p>
+ */
+final class AmountIndex {
+
+  // Smaller tails are always scanned instead of merged
+  private static final int MIN_MERGE = 64;
+
+  // Rows sorted by amount
+  private double[] keys = new double[16];
+  private int[] rows = new int[16];
+  private int size;
+
+  // Rows appended since the last query, in insertion order
+  private double[] pendingKeys = new double[16];
+  private int[] pendingRows = new int[16];
+  private int pendingSize;
+
+  /**
+   * Records that a row was appended.
+   *
+   * @param amount The amount of the new row.
+   * @param row    The new row.
+   */
+  void add(double amount, int row) {
+    if (pendingSize == pendingKeys.length) {
+      pendingKeys = Arrays.copyOf(pendingKeys, pendingSize << 1);
+      pendingRows = Arrays.copyOf(pendingRows, pendingSize << 1);
+    }
+    pendingKeys[pendingSize] = amount;
+    pendingRows[pendingSize] = row;
+    pendingSize++;
+  }
+
+  /**
+   * Removes all rows, so the index can be rebuilt after the rows were compacted.
+   */
+  void clear() {
+    size = 0;
+    pendingSize = 0;
+  }
+
+  /**
+   * @return The bytes held by the arrays of the index, including unused capacity.
+   */
+  long footprint() {
+    return 12L * (keys.length + pendingKeys.length);
+  }
+
+  /**
+   * @return {@code true} if so many rows were appended that queries should {@link #merge()} them first.
+   */
+  boolean needsMerge() {
+    return pendingSize > Math.max(MIN_MERGE, (int) Math.sqrt(size));
+  }
+
+  /**
+   * Sorts the appended rows and merges them into the sorted rows, in O(n) and without
+   * allocating unless the sorted rows need to grow.
+   */
+  void merge() {
+    if (pendingSize == 0) {
+      return;
+    }
+    sort(pendingKeys, pendingRows, 0, pendingSize - 1);
+    int total = size + pendingSize;
+    if (total > keys.length) {
+      int capacity = Math.max(total, keys.length + (keys.length >> 1));
+      keys = Arrays.copyOf(keys, capacity);
+      rows = Arrays.copyOf(rows, capacity);
+    }
+    // Merge from the back, so no sorted row is overwritten before it is moved
+    int i = size - 1;
+    int j = pendingSize - 1;
+    for (int k = total - 1; j >= 0; k--) {
+      if (i >= 0 && keys[i] > pendingKeys[j]) {
+        keys[k] = keys[i];
+        rows[k] = rows[i--];
+      } else {
+        keys[k] = pendingKeys[j];
+        rows[k] = pendingRows[j--];
+      }
+    }
+    size = total;
+    pendingSize = 0;
+  }
+
+  /**
+   * Finds the rows whose amount lies in the inclusive range {@code [min, max]}, without
+   * modifying the index, in O(log n + t + k log k) for a tail of t rows and k matches.
+   *
+   * @param min   The lowest matching amount.
+   * @param max   The highest matching amount.
+   * @param limit Rows at or above this limit are ignored.
+   * @return The matching rows in ascending order.
+   */
+  int[] rows(double min, double max, int limit) {
+    int from = lowerBound(min);
+    int to = Math.max(from, upperBound(max));
+    int[] matches = new int[to - from + pendingSize];
+    int count = 0;
+    for (int i = from; i < to; i++) {
+      if (rows[i] < limit) {
+        matches[count++] = rows[i];
+      }
+    }
+    for (int i = 0; i < pendingSize; i++) {
+      if (pendingKeys[i] >= min && pendingKeys[i] <= max && pendingRows[i] < limit) {
+        matches[count++] = pendingRows[i];
+      }
+    }
+    // Only the matches are sorted from amount order into row order
+    Arrays.sort(matches, 0, count);
+    return count == matches.length ? matches : Arrays.copyOf(matches, count);
+  }
+
+  /**
+   * Estimates the rows whose amount lies in the inclusive range {@code [min, max]} in O(log n),
+   * without modifying the index. Every row of the unsorted tail is assumed to match, so the
+   * estimate is at most {@link #needsMerge() a square root} of the rows too high.
+   *
+   * @param min The lowest matching amount.
+   * @param max The highest matching amount.
+   * @return The estimated number of matching rows, counting rows appended after a snapshot as well.
+   */
+  int estimate(double min, double max) {
+    return Math.max(0, upperBound(max) - lowerBound(min)) + pendingSize;
+  }
+
+  // First position whose key is >= amount
+  private int lowerBound(double amount) {
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (keys[mid] < amount) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  // First position whose key is > amount
+  private int upperBound(double amount) {
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (keys[mid] <= amount) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  // Quicksort of the keys, moving the rows along with them
+  private static void sort(double[] keys, int[] rows, int lo, int hi) {
+    while (lo < hi) {
+      double pivot = keys[(lo + hi) >>> 1];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (keys[i] < pivot) {
+          i++;
+        }
+        while (keys[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          double k = keys[i];
+          keys[i] = keys[j];
+          keys[j] = k;
+          int r = rows[i];
+          rows[i] = rows[j];
+          rows[j] = r;
+          i++;
+          j--;
+        }
+      }
+      // Recurse into the smaller half to bound the stack depth
+      if (j - lo < hi - i) {
+        sort(keys, rows, lo, j);
+        lo = i;
+      } else {
+        sort(keys, rows, i, hi);
+        hi = j;
+      }
+    }
+  }
+
+}
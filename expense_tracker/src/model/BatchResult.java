@@ -0,0 +1,92 @@
+package model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of adding a batch of transactions: where the accepted ones were stored,
+ * and why the others were rejected.
+ */
+public final class BatchResult {
+
+  private final int firstRow;
+  private final int addedCount;
+  private final List<Rejection> rejections;
+
+  /**
+   * @param firstRow   The row of the first added transaction. The others follow it.
+   * @param addedCount The number of added transactions.
+   * @param rejections The transactions which were not added.
+   */
+  public BatchResult(int firstRow, int addedCount, List<Rejection> rejections) {
+    this.firstRow = firstRow;
+    this.addedCount = addedCount;
+    this.rejections = Collections.unmodifiableList(rejections);
+  }
+
+  /**
+   * @return The row of the first added transaction.
+   */
+  public int getFirstRow() {
+    return firstRow;
+  }
+
+  /**
+   * @return The row of the last added transaction, or {@code firstRow - 1} if none was added.
+   */
+  public int getLastRow() {
+    return firstRow + addedCount - 1;
+  }
+
+  /**
+   * @return The number of added transactions.
+   */
+  public int getAddedCount() {
+    return addedCount;
+  }
+
+  /**
+   * @return The rejected transactions, in the order of the batch.
+   */
+  public List<Rejection> getRejections() {
+    return rejections;
+  }
+
+  /**
+   * A transaction of the batch which was not added.
+   */
+  public static final class Rejection {
+
+    private final int index;
+    private final String reason;
+
+    /**
+     * @param index  The position of the transaction in the batch.
+     * @param reason Why the transaction was rejected.
+     */
+    public Rejection(int index, String reason) {
+      this.index = index;
+      this.reason = reason;
+    }
+
+    /**
+     * @return The position of the transaction in the batch.
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    /**
+     * @return Why the transaction was rejected.
+     */
+    public String getReason() {
+      return reason;
+    }
+
+    @Override
+    public String toString() {
+      return index + ": " + reason;
+    }
+  }
+
+}
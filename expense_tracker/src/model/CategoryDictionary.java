@@ -0,0 +1,88 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dictionary encoding for the category column of the {@link TransactionStore}.
+ * Every distinct category string is stored once and referenced by a small int code, so rows keep
+ * the spelling they were added with. Each entry also maps to its {@link CategoryRegistry} code,
+ * which the indexes and aggregates use so that spellings differing in case count as one category.
+ * <p>
+ * Codes are only assigned under the store's write lock, while snapshots decode without locking,
+ * so the decoding table is republished through a volatile field after every new entry.
+ * </p>
+ */
+final class CategoryDictionary {
+
+  private final Map<String, Integer> codes = new HashMap<>();
+  private volatile String[] values = new String[8];
+  private volatile int[] registryCodes = new int[8];
+  private volatile int count;
+
+  /**
+   * Returns the code of the given category, assigning a new one if it has not been seen yet.
+   *
+   * @param category The category to encode.
+   * @return The code of the category.
+   * @throws IllegalArgumentException if the category is not registered with {@link CategoryRegistry}.
+   */
+  int encode(String category) {
+    Integer code = codes.get(category);
+    if (code == null) {
+      // Reading a file must not widen the categories accepted everywhere else
+      int registryCode = CategoryRegistry.codeOf(category);
+      if (registryCode == CategoryRegistry.UNKNOWN) {
+        throw new IllegalArgumentException("The category is not valid.");
+      }
+      String[] table = values;
+      int[] registered = registryCodes;
+      if (count == table.length) {
+        table = Arrays.copyOf(table, count << 1);
+        registered = Arrays.copyOf(registered, count << 1);
+      }
+      table[count] = category;
+      registered[count] = registryCode;
+      values = table;
+      registryCodes = registered;
+      code = count;
+      count = code + 1;
+      codes.put(category, code);
+    }
+    return code;
+  }
+
+  /**
+   * @param category The category to look up.
+   * @return The code of the category, or -1 if it has never been encoded.
+   */
+  int codeOf(String category) {
+    Integer code = codes.get(category);
+    return code == null ? -1 : code;
+  }
+
+  /**
+   * @return The number of codes assigned so far, codes are assigned from 0 upwards.
+   */
+  int size() {
+    return count;
+  }
+
+  /**
+   * @param code A code previously returned by {@link #encode(String)}.
+   * @return The category string for that code.
+   */
+  String decode(int code) {
+    return values[code];
+  }
+
+  /**
+   * @param code A code previously returned by {@link #encode(String)}.
+   * @return The {@link CategoryRegistry} code of the category for that code.
+   */
+  int registryCode(int code) {
+    return registryCodes[code];
+  }
+
+}
@@ -0,0 +1,103 @@
+package model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Inverted index from category to the rows holding it, maintained by the {@link TransactionStore}.
+ * Categories are given by their {@link CategoryRegistry} code, so they match ignoring case
+ * like the {@link model.Filter.CategoryFilter}.
+ * <p>
+ * Rows are the slots of the store. Removed slots stay in the index until the store is
+ * compacted, so callers skip them.
+ * </p>
+ */
+final class CategoryIndex {
+
+  // Indexed by category code
+  private Postings[] postings = new Postings[8];
+
+  /**
+   * Records that a row holding the given category was appended.
+   *
+   * @param category The category code of the new row.
+   * @param row      The row, which must be greater than every row already indexed.
+   */
+  void add(int category, int row) {
+    postings(category).append(row);
+  }
+
+  /**
+   * Returns a sink for appending many rows of one category without looking it up each time.
+   *
+   * @param category The category code of the rows.
+   * @return Records each row passed to it, which must be greater than every row already indexed.
+   */
+  IntConsumer appender(int category) {
+    return postings(category)::append;
+  }
+
+  /**
+   * Removes all rows, so the index can be rebuilt after the rows were compacted.
+   */
+  void clear() {
+    Arrays.fill(postings, null);
+  }
+
+  /**
+   * Looks up the rows of a category.
+   *
+   * @param category The category code to look up.
+   * @param limit    Rows at or above this limit are ignored.
+   * @return The rows holding the category in ascending order.
+   */
+  int[] rows(int category, int limit) {
+    Postings p = category >= 0 && category < postings.length ? postings[category] : null;
+    return p == null ? new int[0] : p.rowsBelow(limit);
+  }
+
+  /**
+   * @return The bytes held by the postings of all categories, including unused capacity.
+   */
+  long footprint() {
+    long bytes = 0;
+    for (Postings p : postings) {
+      if (p != null) {
+        bytes += 4L * p.rows.length;
+      }
+    }
+    return bytes;
+  }
+
+  private Postings postings(int category) {
+    if (category >= postings.length) {
+      postings = Arrays.copyOf(postings, Math.max(category + 1, postings.length << 1));
+    }
+    if (postings[category] == null) {
+      postings[category] = new Postings();
+    }
+    return postings[category];
+  }
+
+  /**
+   * Ascending list of rows for one category.
+   */
+  private static final class Postings {
+
+    private int[] rows = new int[8];
+    private int size;
+
+    void append(int row) {
+      if (size == rows.length) {
+        rows = Arrays.copyOf(rows, size << 1);
+      }
+      rows[size++] = row;
+    }
+
+    int[] rowsBelow(int limit) {
+      int end = Arrays.binarySearch(rows, 0, size, limit);
+      return Arrays.copyOf(rows, end < 0 ? -end - 1 : end);
+    }
+  }
+
+}
@@ -0,0 +1,200 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The categories transactions can have, each interned to a small int code.
+ * <p>
+ * A category is a word of ASCII letters and is matched ignoring case. The predefined categories
+ * have the codes 0 to 4, and custom categories can be registered at runtime. The model, its
+ * indexes and the filters refer to categories by these codes.
+ * </p>
+ * <p>
+ * Lookups hash the characters in place and probe a precomputed open addressing table, so
+ * validating a category does not allocate. Registrations are serialized and publish a new table
+ * through a volatile field, so lookups never lock.
+ * </p>
+ */
+public final class CategoryRegistry {
+
+  /**
+   * Code of a category which is not registered.
+   */
+  public static final int UNKNOWN = -1;
+  // Keeps the codes small enough for the per-code arrays of the model
+  private static final int MAX_CATEGORIES = 1 << 12;
+  private static final String[] PREDEFINED = {"food", "travel", "bills", "entertainment", "other"};
+
+  private static volatile Table table = new Table(new String[0]);
+
+  static {
+    for (String category : PREDEFINED) {
+      register(category);
+    }
+  }
+
+  private CategoryRegistry() {
+  }
+
+  /**
+   * Registers a custom category, if it is not registered yet.
+   *
+   * @param category The category, a word of ASCII letters.
+   * @return The code of the category.
+   * @throws IllegalArgumentException if the category is not a word of ASCII letters, or
+   *                                  too many categories are registered.
+   */
+  public static synchronized int register(String category) {
+    if (category == null || hash(category) == UNKNOWN) {
+      throw new IllegalArgumentException("The category is not valid.");
+    }
+    int code = codeOf(category);
+    if (code != UNKNOWN) {
+      return code;
+    }
+    String[] names = table.names;
+    if (names.length == MAX_CATEGORIES) {
+      throw new IllegalArgumentException("Too many categories.");
+    }
+    names = Arrays.copyOf(names, names.length + 1);
+    names[names.length - 1] = category.toLowerCase(Locale.ROOT);
+    table = new Table(names);
+    return names.length - 1;
+  }
+
+  /**
+   * Looks up a category ignoring case, without allocating.
+   *
+   * @param category The category to look up.
+   * @return The code of the category, or {@link #UNKNOWN} if it is not registered.
+   */
+  public static int codeOf(CharSequence category) {
+    if (category == null) {
+      return UNKNOWN;
+    }
+    int hash = hash(category);
+    if (hash == UNKNOWN) {
+      return UNKNOWN;
+    }
+    Table t = table;
+    int length = category.length();
+    for (int i = hash & t.mask; t.codes[i] != 0; i = (i + 1) & t.mask) {
+      String name = t.names[t.codes[i] - 1];
+      if (name.length() == length && matches(name, category)) {
+        return t.codes[i] - 1;
+      }
+    }
+    return UNKNOWN;
+  }
+
+  /**
+   * Looks up a category given as ASCII bytes, e.g. a field of an imported file, ignoring case.
+   *
+   * @param bytes  The buffer holding the category.
+   * @param offset The position of the first byte of the category.
+   * @param length The number of bytes of the category.
+   * @return The code of the category, or {@link #UNKNOWN} if it is not registered.
+   */
+  public static int codeOf(byte[] bytes, int offset, int length) {
+    if (length == 0) {
+      return UNKNOWN;
+    }
+    int hash = 0;
+    for (int i = offset; i < offset + length; i++) {
+      if (!isAsciiLetter(bytes[i])) {
+        return UNKNOWN;
+      }
+      hash = 31 * hash + (bytes[i] | 0x20);
+    }
+    Table t = table;
+    for (int i = spread(hash) & t.mask; t.codes[i] != 0; i = (i + 1) & t.mask) {
+      String name = t.names[t.codes[i] - 1];
+      if (name.length() == length) {
+        int j = 0;
+        while (j < length && (bytes[offset + j] | 0x20) == name.charAt(j)) {
+          j++;
+        }
+        if (j == length) {
+          return t.codes[i] - 1;
+        }
+      }
+    }
+    return UNKNOWN;
+  }
+
+  /**
+   * @param code The code of a registered category.
+   * @return The category in lower case.
+   */
+  public static String name(int code) {
+    return table.names[code];
+  }
+
+  /**
+   * @return The number of registered categories, codes are assigned from 0 upwards.
+   */
+  public static int size() {
+    return table.names.length;
+  }
+
+  // Hash of the lower case category, or UNKNOWN if it is not a word of ASCII letters
+  private static int hash(CharSequence category) {
+    int length = category.length();
+    if (length == 0) {
+      return UNKNOWN;
+    }
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      char c = category.charAt(i);
+      if (!isAsciiLetter(c)) {
+        return UNKNOWN;
+      }
+      hash = 31 * hash + (c | 0x20);
+    }
+    return spread(hash);
+  }
+
+  // Non-negative, so it cannot be mistaken for UNKNOWN
+  private static int spread(int hash) {
+    return (hash ^ (hash >>> 16)) & Integer.MAX_VALUE;
+  }
+
+  private static boolean matches(String name, CharSequence category) {
+    for (int i = 0; i < name.length(); i++) {
+      if ((category.charAt(i) | 0x20) != name.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isAsciiLetter(int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  /**
+   * Immutable open addressing table from the hash of a category to its code plus one, 0 marks an empty entry.
+   */
+  private static final class Table {
+
+    final String[] names;
+    final int[] codes;
+    final int mask;
+
+    Table(String[] names) {
+      this.names = names;
+      int capacity = Integer.highestOneBit(Math.max(4, names.length * 4) - 1) << 1;
+      this.codes = new int[capacity];
+      this.mask = capacity - 1;
+      for (int code = 0; code < names.length; code++) {
+        int i = hash(names[code]) & mask;
+        while (codes[i] != 0) {
+          i = (i + 1) & mask;
+        }
+        codes[i] = code + 1;
+      }
+    }
+  }
+
+}
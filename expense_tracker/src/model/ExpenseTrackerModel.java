@@ -1,16 +1,91 @@
 package model;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import metrics.Metrics;
+import model.Persistence.SnapshotFile;
+import model.Persistence.WriteAheadLog;
+
+/**
+ * Holds the transactions of the application.
+ * <p>
+ * The model is thread-safe: transactions can be added and removed from several threads at once,
+ * and every snapshot returned by {@link #getSnapshot()} is consistent with one version of the model.
+ * </p>
+ * <p>
+ * A model created with a {@link WriteAheadLog} is durable: it is rebuilt from the log on startup,
+ * and adds and removes only return once they have been written to disk.
+ * </p>
+ * <p>
+ * Every change is published as a {@link ModelEvent} to the registered {@link ModelListener}s,
+ * so views can follow changes made by any thread.
+ * </p>
+ */
 public class ExpenseTrackerModel {
 
   //encapsulation - data integrity
-  private List<Transaction> transactions;
+  private TransactionStore transactions;
+  private WriteAheadLog log;
+  private final List<ModelListener> listeners = new CopyOnWriteArrayList<>();
 
   public ExpenseTrackerModel() {
-    transactions = new ArrayList<>(); 
+    transactions = new TransactionStore(); 
+  }
+
+  /**
+   * Creates a durable model, rebuilding its transactions from the given log.
+   *
+   * @param log The log to replay and then append every change to.
+   * @throws IOException if the log cannot be read, or holds a category which is not registered.
+   */
+  public ExpenseTrackerModel(WriteAheadLog log) throws IOException {
+    this();
+    List<Transaction> batch = new ArrayList<>();
+    log.replay((type, id, amount, category, time) -> {
+      if (type == WriteAheadLog.ADD) {
+        batch.add(Transaction.fromLog(amount, category, time, id));
+        if (batch.size() == 4096) {
+          transactions.addAll(batch);
+          batch.clear();
+        }
+      } else {
+        transactions.addAll(batch);
+        batch.clear();
+        // Found by its id, unless the same transaction was added more than once
+        transactions.remove(Transaction.fromStore(amount, category, time, id), false);
+      }
+    });
+    transactions.addAll(batch);
+    transactions.attach(log);
+    this.log = log;
+  }
+  /**
+   * Opens a model from a binary snapshot file written by {@link #saveSnapshot(Path)}.
+   * The columns are copied in bulk from the memory-mapped file, so no transaction
+   * is created until a row is read.
+   *
+   * @param path The snapshot file.
+   * @return A model holding the transactions of the file.
+   * @throws IOException if the file cannot be read, or holds a category which is not registered.
+   */
+  public static ExpenseTrackerModel openSnapshot(Path path) throws IOException {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    model.transactions.load(SnapshotFile.read(path));
+    return model;
+  }
+  /**
+   * Writes the current transactions to a binary snapshot file.
+   *
+   * @param path The file to write.
+   * @throws IOException if the file cannot be written.
+   */
+  public void saveSnapshot(Path path) throws IOException {
+    SnapshotFile.write(getSnapshot(), path);
   }
   /**
    * Adds a transaction to the previously defined set of transactions
@@ -22,15 +97,103 @@ public class ExpenseTrackerModel {
     if (t == null) {
       throw new IllegalArgumentException("The new transaction must be non-null.");
     }
-    transactions.add(t);
+    long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+    ModelEvent event = transactions.add(t);
+    awaitDurable();
+    if (Metrics.ENABLED) {
+      Metrics.ADD_TRANSACTION.recordSince(start);
+    }
+    fire(event);
+  }
+  /**
+   * Adds a batch of transactions in one step, so observers only see one new version.
+   * Null entries are rejected, the others are stored in the order of the batch.
+   *
+   * @param batch The transactions to be added.
+   * @return Which transactions were added and which were rejected.
+   */
+  public BatchResult addTransactions(Collection<Transaction> batch) {
+    List<Transaction> accepted = new ArrayList<>(batch.size());
+    List<BatchResult.Rejection> rejections = new ArrayList<>();
+    int index = 0;
+    for (Transaction t : batch) {
+      if (t == null) {
+        rejections.add(new BatchResult.Rejection(index, "The new transaction must be non-null."));
+      } else {
+        accepted.add(t);
+      }
+      index++;
+    }
+    ModelEvent event = transactions.addAll(accepted);
+    // One wait covers the whole batch
+    awaitDurable();
+    if (!accepted.isEmpty()) {
+      fire(event);
+    }
+    return new BatchResult(event.getFirstRow(), accepted.size(), rejections);
   }
   /**
-   * Removes a transaction to the previously defined set of transactions
+   * Removes a transaction to the previously defined set of transactions.
+   * It is found by its id in O(1) if it was added to or read from this model.
    *
    * @param t The transaction to be deleted.
    */
   public void removeTransaction(Transaction t) {
-    transactions.remove(t);
+    if (t == null) {
+      return;
+    }
+    long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+    ModelEvent event = transactions.remove(t, !listeners.isEmpty());
+    if (event != null) {
+      awaitDurable();
+      if (Metrics.ENABLED) {
+        Metrics.REMOVE_TRANSACTION.recordSince(start);
+      }
+      fire(event);
+    }
+  }
+  /**
+   * Removes several transactions by their ids as one change, e.g. all rows selected for undo.
+   * Each removal takes O(1), the space is reclaimed later by a background compaction.
+   *
+   * @param ids The ids of the transactions to be removed. Unknown ids are ignored.
+   * @return The number of removed transactions.
+   */
+  public int removeTransactions(long... ids) {
+    long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+    ModelEvent event = transactions.removeAll(ids, !listeners.isEmpty());
+    if (event == null) {
+      return 0;
+    }
+    awaitDurable();
+    if (Metrics.ENABLED) {
+      Metrics.REMOVE_TRANSACTION.recordSince(start);
+    }
+    fire(event);
+    return event.getCount();
+  }
+  /**
+   * Adds back transactions which were removed from this model, as one change. Until the removed
+   * rows are compacted away each one is restored in its previous row in O(1), afterwards it is
+   * added at the end. Transactions which are still in the model are skipped.
+   *
+   * @param removed The removed transactions, as read from the model before they were removed.
+   * @return The number of restored transactions.
+   */
+  public int restoreTransactions(List<Transaction> removed) {
+    ModelEvent event = transactions.restoreAll(removed, !listeners.isEmpty());
+    if (event == null) {
+      return 0;
+    }
+    awaitDurable();
+    fire(event);
+    return event.getCount();
+  }
+  /**
+   * Reclaims the space of removed transactions now instead of waiting for the background compaction.
+   */
+  public void compact() {
+    transactions.compact();
   }
   /**
    * returns a existing set of transactions
@@ -38,7 +201,85 @@ public class ExpenseTrackerModel {
    */
   public List<Transaction> getTransactions() {
     //encapsulation - data integrity
-    return Collections.unmodifiableList(new ArrayList<>(transactions));
+    return getSnapshot();
+  }
+  /**
+   * Returns an immutable view of the transactions at the current version, without copying them.
+   * @return The snapshot of the current version.
+   */
+  public TransactionSnapshot getSnapshot() {
+    return transactions.snapshot();
+  }
+  /**
+   * @return The sum of the amounts of all transactions, maintained as they are added and removed.
+   */
+  public double getTotalAmount() {
+    return getSnapshot().getTotalAmount();
+  }
+  /**
+   * Reads the spend per day, week or month from rollups kept up to date by every add and remove,
+   * in O(buckets) regardless of the number of transactions.
+   *
+   * @param granularity The length of the buckets.
+   * @param category    The category to report, ignoring case, or {@code null} for all categories.
+   * @param from        The earliest bucket start to include, in epoch milliseconds.
+   * @param to          The bucket start to stop before, in epoch milliseconds.
+   * @return The buckets which hold transactions, in ascending order of their start.
+   */
+  public List<TimeBucket> getRollup(Granularity granularity, String category, long from, long to) {
+    if (granularity == null) {
+      throw new IllegalArgumentException("The granularity must be non-null.");
+    }
+    if (category == null) {
+      return transactions.rollup(granularity, CategoryRegistry.UNKNOWN, from, to);
+    }
+    int code = CategoryRegistry.codeOf(category);
+    return code == CategoryRegistry.UNKNOWN ? new ArrayList<>() : transactions.rollup(granularity, code, from, to);
+  }
+  /**
+   * Registers a listener to be told about every following change.
+   *
+   * @param listener The listener.
+   */
+  public void addModelListener(ModelListener listener) {
+    if (listener == null) {
+      throw new IllegalArgumentException("The listener must be non-null.");
+    }
+    listeners.add(listener);
+  }
+  /**
+   * @param listener A listener which is not told about changes anymore.
+   */
+  public void removeModelListener(ModelListener listener) {
+    listeners.remove(listener);
+  }
+  /**
+   * Estimates the heap used by the transactions and their indexes, e.g. for monitoring.
+   *
+   * @return The estimated number of bytes.
+   */
+  public long getEstimatedHeapBytes() {
+    return transactions.footprint();
+  }
+  /**
+   * @return The current version of the model, incremented by every add and remove.
+   */
+  public long getVersion() {
+    return transactions.version();
+  }
+
+  private void fire(ModelEvent event) {
+    for (ModelListener listener : listeners) {
+      listener.modelChanged(event);
+    }
+  }
+
+  // Waits for the last logged change. Sequence numbers only grow, so if another writer
+  // logged after us this waits a little longer than needed, but never too short.
+  private void awaitDurable() {
+    if (log != null) {
+      log.awaitDurable(transactions.loggedSequence());
+    }
   }
 
 }
@@ -1,6 +1,6 @@
 package model.Filter;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import model.Transaction;
@@ -8,9 +8,10 @@ import controller.InputValidation;
 
 /**
  * This class implements the TransactionFilter and updates the view with the selected amount filter.
+ * An exact amount is answered as the degenerate range {@code [amount, amount]} of an {@link AmountRangeFilter}.
  */
-public class AmountFilter implements TransactionFilter{
-    private double amountFilter;
+public class AmountFilter implements RowIndexFilter{
+    private AmountRangeFilter range;
 
     public AmountFilter(double amountFilter){
         // Since the AmountFilter constructor is public, 
@@ -18,19 +19,22 @@ public class AmountFilter implements TransactionFilter{
         if(!InputValidation.isValidAmount(amountFilter)){
             throw new IllegalArgumentException("Invalid amount filter");
         } else {
-            this.amountFilter = amountFilter;
+            this.range = new AmountRangeFilter(amountFilter, amountFilter);
         }
     }
     @Override
-    public List<Transaction> filter(List<Transaction> transactions){
-        List<Transaction> filteredTransactions = new ArrayList<>();
-        for(Transaction transaction : transactions){
-            // Your solution could use a different comparison here.
-            if(transaction.getAmount() == amountFilter){
-                filteredTransactions.add(transaction);
-            }
-        }
-        return filteredTransactions;
+    public BitSet filterRows(List<Transaction> transactions){
+        return range.filterRows(transactions);
+    }
+
+    @Override
+    public BitSet filterRows(List<Transaction> transactions, BitSet candidates) {
+        return range.filterRows(transactions, candidates);
+    }
+
+    @Override
+    public int estimateRows(List<Transaction> transactions) {
+        return range.estimateRows(transactions);
     }
     
 }
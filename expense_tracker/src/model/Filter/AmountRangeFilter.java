@@ -0,0 +1,112 @@
+package model.Filter;
+
+import java.util.BitSet;
+import java.util.List;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * This class implements the TransactionFilter and selects the transactions whose amount lies in a range.
+ * The bounds are inclusive; use {@link #over(double)} and {@link #under(double)} for open ranges.
+ */
+public class AmountRangeFilter implements RowIndexFilter {
+    // The index is used when at most one row in this many matches
+    private static final int INDEX_SELECTIVITY = 16;
+
+    private final double minAmount;
+    private final double maxAmount;
+
+    public AmountRangeFilter(double minAmount, double maxAmount) {
+        // NaN bounds fail this check as well
+        if (!(minAmount <= maxAmount)) {
+            throw new IllegalArgumentException("Invalid amount range");
+        }
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+    }
+
+    /**
+     * @return a filter for the amounts between {@code minAmount} and {@code maxAmount}, both included
+     */
+    public static AmountRangeFilter between(double minAmount, double maxAmount) {
+        return new AmountRangeFilter(minAmount, maxAmount);
+    }
+
+    /**
+     * @return a filter for the amounts strictly greater than {@code amount}
+     */
+    public static AmountRangeFilter over(double amount) {
+        return new AmountRangeFilter(Math.nextUp(amount), Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @return a filter for the amounts strictly less than {@code amount}
+     */
+    public static AmountRangeFilter under(double amount) {
+        return new AmountRangeFilter(Double.NEGATIVE_INFINITY, Math.nextDown(amount));
+    }
+
+    public double getMinAmount() {
+        return minAmount;
+    }
+
+    public double getMaxAmount() {
+        return maxAmount;
+    }
+
+    @Override
+    public BitSet filterRows(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            TransactionSnapshot snapshot = (TransactionSnapshot) transactions;
+            // Answer from the model's amount index in O(log n + k log k), unless so many rows match
+            // that sorting them costs more than scanning the column
+            int estimate = snapshot.estimateInAmountRange(minAmount, maxAmount);
+            int[] rows = estimate >= 0 && estimate <= snapshot.size() / INDEX_SELECTIVITY
+                ? snapshot.rowsInAmountRange(minAmount, maxAmount) : null;
+            if (rows != null) {
+                BitSet filteredRows = new BitSet(snapshot.size());
+                for (int row : rows) {
+                    filteredRows.set(row);
+                }
+                return filteredRows;
+            }
+            // Otherwise scan the amount column without materializing the transactions
+            return RowScan.scan(snapshot, row -> matches(snapshot.getAmount(row)));
+        }
+
+        return RowScan.scan(transactions, row -> matches(transactions.get(row).getAmount()));
+    }
+
+    @Override
+    public BitSet filterRows(List<Transaction> transactions, BitSet candidates) {
+        // Probing the candidates is cheaper than reading the index when they are fewer than its matches
+        if (candidates.cardinality() >= estimateRows(transactions)) {
+            return RowIndexFilter.super.filterRows(transactions, candidates);
+        }
+        BitSet filteredRows = new BitSet(transactions.size());
+        boolean snapshot = transactions instanceof TransactionSnapshot;
+        for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+            double amount = snapshot ? ((TransactionSnapshot) transactions).getAmount(row) : transactions.get(row).getAmount();
+            if (matches(amount)) {
+                filteredRows.set(row);
+            }
+        }
+        return filteredRows;
+    }
+
+    @Override
+    public int estimateRows(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            int estimate = ((TransactionSnapshot) transactions).estimateInAmountRange(minAmount, maxAmount);
+            if (estimate >= 0) {
+                return estimate;
+            }
+        }
+        return transactions.size();
+    }
+
+    private boolean matches(double amount) {
+        return amount >= minAmount && amount <= maxAmount;
+    }
+}
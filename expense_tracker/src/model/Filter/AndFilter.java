@@ -0,0 +1,54 @@
+package model.Filter;
+
+import java.util.BitSet;
+import java.util.List;
+
+import model.Transaction;
+
+/**
+ * This class implements the TransactionFilter and selects the transactions matching all of the given filters.
+ * <p>
+ * The filters are evaluated from the most selective to the least selective one, each only on the rows
+ * that matched so far, and the evaluation stops as soon as no row is left.
+ * </p>
+ */
+public class AndFilter implements RowIndexFilter {
+    private final List<RowIndexFilter> filters;
+
+    public AndFilter(TransactionFilter... filters) {
+        this.filters = FilterPlanner.operands(filters);
+    }
+
+    @Override
+    public BitSet filterRows(List<Transaction> transactions) {
+        List<RowIndexFilter> plan = FilterPlanner.bySelectivity(filters, transactions, true);
+        BitSet rows = FilterPlanner.filterRows(plan.get(0), transactions);
+        for (int i = 1; i < plan.size() && !rows.isEmpty(); i++) {
+            rows = FilterPlanner.filterRows(plan.get(i), transactions, rows);
+        }
+        return rows;
+    }
+
+    @Override
+    public BitSet filterRows(List<Transaction> transactions, BitSet candidates) {
+        BitSet rows = candidates;
+        for (RowIndexFilter filter : FilterPlanner.bySelectivity(filters, transactions, true)) {
+            if (rows.isEmpty()) {
+                break;
+            }
+            rows = FilterPlanner.filterRows(filter, transactions, rows);
+        }
+        return rows == candidates ? (BitSet) candidates.clone() : rows;
+    }
+
+    @Override
+    public int estimateRows(List<Transaction> transactions) {
+        // Assumes that the filters are independent
+        double size = transactions.size();
+        double estimate = size;
+        for (RowIndexFilter filter : filters) {
+            estimate *= size == 0 ? 0 : filter.estimateRows(transactions) / size;
+        }
+        return (int) Math.ceil(estimate);
+    }
+}
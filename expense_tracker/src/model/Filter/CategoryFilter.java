@@ -1,37 +1,75 @@
 package model.Filter;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
+import model.CategoryRegistry;
 import model.Transaction;
-import controller.InputValidation;
+import model.TransactionSnapshot;
 /**
  * This class implements the TransactionFilter and updates the view with the selected Category filter.
+ * Categories are compared by their {@link CategoryRegistry} code, which ignores case.
  */
-public class CategoryFilter implements TransactionFilter {
-    private String categoryFilter;
+public class CategoryFilter implements RowIndexFilter {
+    private int categoryCode;
 
     public CategoryFilter(String categoryFilter) {
         // Since the CategoryFilter constructor is public, 
         // the input validation needs to be performed again.
-        if(!InputValidation.isValidCategory(categoryFilter)){
+        int code = CategoryRegistry.codeOf(categoryFilter);
+        if(code == CategoryRegistry.UNKNOWN){
             throw new IllegalArgumentException("Invalid category filter");
         }else{
-            this.categoryFilter = categoryFilter;
+            this.categoryCode = code;
         }
     }
 
     @Override
-    public List<Transaction> filter(List<Transaction> transactions) {
+    public BitSet filterRows(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            TransactionSnapshot snapshot = (TransactionSnapshot) transactions;
+            // Answer from the model's category index in O(matches)
+            int[] rows = snapshot.rowsInCategory(categoryCode);
+            if (rows != null) {
+                BitSet filteredRows = new BitSet(snapshot.size());
+                for (int row : rows) {
+                    filteredRows.set(row);
+                }
+                return filteredRows;
+            }
+            // Otherwise scan the category column without materializing the transactions
+            return RowScan.scan(snapshot, row -> snapshot.getCategoryCode(row) == categoryCode);
+        }
 
-        List<Transaction> filteredTransactions = new ArrayList<>();
+        return RowScan.scan(transactions, row -> CategoryRegistry.codeOf(transactions.get(row).getCategory()) == categoryCode);
+    }
 
-        for (Transaction transaction : transactions) {
-            if (transaction.getCategory().equalsIgnoreCase(categoryFilter)) {
-                filteredTransactions.add(transaction);
+    @Override
+    public BitSet filterRows(List<Transaction> transactions, BitSet candidates) {
+        // Probing the candidates is cheaper than reading the index when they are fewer than its matches
+        if (candidates.cardinality() >= estimateRows(transactions)) {
+            return RowIndexFilter.super.filterRows(transactions, candidates);
+        }
+        BitSet filteredRows = new BitSet(transactions.size());
+        boolean snapshot = transactions instanceof TransactionSnapshot;
+        for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+            int code = snapshot ? ((TransactionSnapshot) transactions).getCategoryCode(row)
+                : CategoryRegistry.codeOf(transactions.get(row).getCategory());
+            if (code == categoryCode) {
+                filteredRows.set(row);
             }
         }
+        return filteredRows;
+    }
 
-        return filteredTransactions;
+    @Override
+    public int estimateRows(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            int count = ((TransactionSnapshot) transactions).countInCategory(categoryCode);
+            if (count >= 0) {
+                return count;
+            }
+        }
+        return transactions.size();
     }
 }
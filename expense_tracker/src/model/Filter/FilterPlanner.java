@@ -0,0 +1,147 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import metrics.Metrics;
+import model.Transaction;
+
+/**
+ * Plans the evaluation of composite filters from the estimates of their operands, and evaluates
+ * every filter, recording its latency under its class.
+ * <p>
+ * And, Or and Not filters evaluate their operands through here as well, so each filter that
+ * matches rows is timed exactly once, and the composites, which only combine the rows of their
+ * operands, are not timed themselves.
+ * </p>
+ */
+public final class FilterPlanner {
+
+    private FilterPlanner() {
+    }
+
+    /**
+     * Finds the rows matching a filter. Filters that only return the matching transactions are
+     * mapped back to rows, equal transactions are matched as often as the filter returned them.
+     *
+     * @param filter       the filter to evaluate
+     * @param transactions the transactions to filter
+     * @return the positions in {@code transactions} that match the filter
+     */
+    public static BitSet filterRows(TransactionFilter filter, List<Transaction> transactions) {
+        return filterRows(filter instanceof RowIndexFilter ? (RowIndexFilter) filter : new Positions(filter),
+            transactions, null);
+    }
+
+    /**
+     * Evaluates a row filter, on all rows or only on the candidates, and records its latency.
+     *
+     * @param filter       the filter to evaluate
+     * @param transactions the transactions to filter
+     * @param candidates   the positions to consider, or {@code null} for all of them
+     * @return the matching positions
+     */
+    static BitSet filterRows(RowIndexFilter filter, List<Transaction> transactions, BitSet candidates) {
+        if (!Metrics.ENABLED || filter instanceof AndFilter || filter instanceof OrFilter
+                || filter instanceof NotFilter) {
+            return candidates == null ? filter.filterRows(transactions) : filter.filterRows(transactions, candidates);
+        }
+        long start = System.nanoTime();
+        BitSet rows = candidates == null ? filter.filterRows(transactions) : filter.filterRows(transactions, candidates);
+        Class<?> type = filter instanceof Positions ? ((Positions) filter).filter.getClass() : filter.getClass();
+        Metrics.filter(type).recordSince(start);
+        return rows;
+    }
+
+    /**
+     * Checks the operands of a composite filter and turns them into row filters.
+     *
+     * @param filters the operands
+     * @return the operands as row filters, in the given order
+     */
+    static List<RowIndexFilter> operands(TransactionFilter... filters) {
+        if (filters == null || filters.length == 0) {
+            throw new IllegalArgumentException("A composite filter needs at least one filter");
+        }
+        List<RowIndexFilter> operands = new ArrayList<>(filters.length);
+        for (TransactionFilter filter : filters) {
+            if (filter == null) {
+                throw new IllegalArgumentException("The filters must be non-null");
+            }
+            operands.add(filter instanceof RowIndexFilter ? (RowIndexFilter) filter : new Positions(filter));
+        }
+        return Collections.unmodifiableList(operands);
+    }
+
+    /**
+     * Orders filters by their estimated number of matches, each estimated once.
+     *
+     * @param filters      the filters to order
+     * @param transactions the transactions they will be evaluated on
+     * @param ascending    {@code true} to put the most selective filter first
+     * @return the ordered filters
+     */
+    static List<RowIndexFilter> bySelectivity(List<RowIndexFilter> filters, List<Transaction> transactions,
+            boolean ascending) {
+        int count = filters.size();
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            long estimate = filters.get(i).estimateRows(transactions);
+            // The position breaks ties, so equally selective filters keep their order
+            keys[i] = ((ascending ? estimate : Integer.MAX_VALUE - estimate) << 32) | i;
+        }
+        Arrays.sort(keys);
+        List<RowIndexFilter> plan = new ArrayList<>(count);
+        for (long key : keys) {
+            plan.add(filters.get((int) key));
+        }
+        return plan;
+    }
+
+    /**
+     * Adapts a filter that only returns the matching transactions, by looking up their positions.
+     * Equal transactions are matched as often as the filter returned them.
+     */
+    private static final class Positions implements RowIndexFilter {
+
+        private final TransactionFilter filter;
+
+        Positions(TransactionFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public BitSet filterRows(List<Transaction> transactions) {
+            List<Transaction> matches = filter.filter(transactions);
+            Map<Transaction, Integer> remaining = new HashMap<>();
+            for (Transaction t : matches) {
+                remaining.merge(t, 1, Integer::sum);
+            }
+            BitSet rows = new BitSet(transactions.size());
+            for (int row = 0; row < transactions.size() && !remaining.isEmpty(); row++) {
+                Transaction t = transactions.get(row);
+                Integer count = remaining.get(t);
+                if (count != null) {
+                    rows.set(row);
+                    if (count == 1) {
+                        remaining.remove(t);
+                    } else {
+                        remaining.put(t, count - 1);
+                    }
+                }
+            }
+            return rows;
+        }
+
+        @Override
+        public List<Transaction> filter(List<Transaction> transactions) {
+            return filter.filter(transactions);
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package model.Filter;
+
+import java.util.BitSet;
+import java.util.List;
+
+import model.Transaction;
+
+/**
+ * This class implements the TransactionFilter and selects the transactions not matching the given filter.
+ */
+public class NotFilter implements RowIndexFilter {
+    private final RowIndexFilter filter;
+
+    public NotFilter(TransactionFilter filter) {
+        this.filter = FilterPlanner.operands(filter).get(0);
+    }
+
+    @Override
+    public BitSet filterRows(List<Transaction> transactions) {
+        BitSet rows = new BitSet(transactions.size());
+        rows.set(0, transactions.size());
+        rows.andNot(FilterPlanner.filterRows(filter, transactions));
+        return rows;
+    }
+
+    @Override
+    public BitSet filterRows(List<Transaction> transactions, BitSet candidates) {
+        BitSet rows = (BitSet) candidates.clone();
+        rows.andNot(FilterPlanner.filterRows(filter, transactions, candidates));
+        return rows;
+    }
+
+    @Override
+    public int estimateRows(List<Transaction> transactions) {
+        return transactions.size() - filter.estimateRows(transactions);
+    }
+}
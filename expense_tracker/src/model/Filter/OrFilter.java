@@ -0,0 +1,60 @@
+package model.Filter;
+
+import java.util.BitSet;
+import java.util.List;
+
+import model.Transaction;
+
+/**
+ * This class implements the TransactionFilter and selects the transactions matching any of the given filters.
+ * <p>
+ * The filter expected to match the most rows is evaluated first, and every further filter only
+ * on the rows that have not matched yet, so the evaluation stops once every row matched.
+ * </p>
+ */
+public class OrFilter implements RowIndexFilter {
+    private final List<RowIndexFilter> filters;
+
+    public OrFilter(TransactionFilter... filters) {
+        this.filters = FilterPlanner.operands(filters);
+    }
+
+    @Override
+    public BitSet filterRows(List<Transaction> transactions) {
+        List<RowIndexFilter> plan = FilterPlanner.bySelectivity(filters, transactions, false);
+        BitSet rows = FilterPlanner.filterRows(plan.get(0), transactions);
+        for (int i = 1; i < plan.size() && rows.cardinality() < transactions.size(); i++) {
+            BitSet remaining = new BitSet(transactions.size());
+            remaining.set(0, transactions.size());
+            remaining.andNot(rows);
+            rows.or(FilterPlanner.filterRows(plan.get(i), transactions, remaining));
+        }
+        return rows;
+    }
+
+    @Override
+    public BitSet filterRows(List<Transaction> transactions, BitSet candidates) {
+        BitSet rows = new BitSet(transactions.size());
+        BitSet remaining = (BitSet) candidates.clone();
+        for (RowIndexFilter filter : FilterPlanner.bySelectivity(filters, transactions, false)) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            BitSet matched = FilterPlanner.filterRows(filter, transactions, remaining);
+            rows.or(matched);
+            remaining.andNot(matched);
+        }
+        return rows;
+    }
+
+    @Override
+    public int estimateRows(List<Transaction> transactions) {
+        // Assumes that the filters are independent
+        double size = transactions.size();
+        double missed = 1;
+        for (RowIndexFilter filter : filters) {
+            missed *= size == 0 ? 1 : 1 - filter.estimateRows(transactions) / size;
+        }
+        return (int) Math.ceil(size * (1 - missed));
+    }
+}
@@ -0,0 +1,60 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import model.Transaction;
+
+/**
+ * A TransactionFilter that reports the positions of the matching transactions instead of copies of them.
+ * <p>
+ * Callers that need to map matches back to rows, such as the highlighting in the controller,
+ * should use {@link #filterRows(List)}. It also stays correct when two transactions are equal,
+ * which a lookup with {@code indexOf} does not.
+ * </p>
+ */
+public interface RowIndexFilter extends TransactionFilter {
+
+  /**
+   * @param transactions the transactions to filter
+   * @return the set of positions in {@code transactions} that match the filter
+   */
+  public BitSet filterRows(List<Transaction> transactions);
+
+  /**
+   * Restricts the filter to some of the rows, so that a composite filter only checks the rows
+   * still in question. Filters that can probe single rows cheaply should override this.
+   *
+   * @param transactions the transactions to filter
+   * @param candidates   the positions to consider
+   * @return the subset of {@code candidates} that match the filter
+   */
+  public default BitSet filterRows(List<Transaction> transactions, BitSet candidates) {
+    BitSet rows = filterRows(transactions);
+    rows.and(candidates);
+    return rows;
+  }
+
+  /**
+   * Estimates how many transactions match, so that composite filters can evaluate the most
+   * selective filter first. The default assumes that every transaction may match.
+   *
+   * @param transactions the transactions to filter
+   * @return the estimated number of matching positions
+   */
+  public default int estimateRows(List<Transaction> transactions) {
+    return transactions.size();
+  }
+
+  @Override
+  public default List<Transaction> filter(List<Transaction> transactions) {
+    BitSet rows = filterRows(transactions);
+    List<Transaction> filteredTransactions = new ArrayList<>(rows.cardinality());
+    for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+      filteredTransactions.add(transactions.get(row));
+    }
+    return filteredTransactions;
+  }
+
+}
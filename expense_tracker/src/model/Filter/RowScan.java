@@ -0,0 +1,187 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Evaluates a predicate on every row of a list, for filters that cannot answer from an index.
+ * <p>
+ * Large lists are split into ranges of rows with a {@link Spliterator}, which are scanned in
+ * parallel on the common {@link ForkJoinPool}. Every range starts at a multiple of 64, so the
+ * ranges set disjoint words of the result and need no merging beyond writing them in place.
+ * </p>
+ * <p>
+ * A scan stops with a {@link CancellationException} once the thread which started it is
+ * interrupted, e.g. because a newer filter superseded it.
+ * </p>
+ */
+public final class RowScan {
+
+    /**
+     * Lists with fewer rows than this are scanned on the calling thread.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+    // Rows scanned by one task, and between checks for an interrupt
+    private static final int LEAF_SIZE = 1 << 14;
+
+    private RowScan() {
+    }
+
+    /**
+     * Scans the rows of a list, in parallel if it is large enough and allows random access.
+     *
+     * @param transactions the list to scan
+     * @param matches      tests whether the row at a position matches
+     * @return the matching positions
+     */
+    public static BitSet scan(List<?> transactions, IntPredicate matches) {
+        int size = transactions.size();
+        if (size >= PARALLEL_THRESHOLD && transactions instanceof RandomAccess
+                && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            return parallel(size, matches);
+        }
+        return sequential(size, matches);
+    }
+
+    /**
+     * @param size    the number of rows
+     * @param matches tests whether the row at a position matches
+     * @return the matching positions, computed on the calling thread
+     */
+    public static BitSet sequential(int size, IntPredicate matches) {
+        BitSet rows = new BitSet(size);
+        Thread caller = Thread.currentThread();
+        for (int row = 0; row < size; row++) {
+            if ((row & (LEAF_SIZE - 1)) == 0) {
+                checkInterrupt(caller);
+            }
+            if (matches.test(row)) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @param size    the number of rows
+     * @param matches tests whether the row at a position matches, called from several threads
+     * @return the matching positions, computed on the common fork-join pool
+     */
+    public static BitSet parallel(int size, IntPredicate matches) {
+        long[] words = new long[(size + 63) >>> 6];
+        ForkJoinPool.commonPool().invoke(new ScanTask(new RowRange(0, size), matches, words, Thread.currentThread()));
+        return BitSet.valueOf(words);
+    }
+
+    private static void checkInterrupt(Thread caller) {
+        if (caller.isInterrupted()) {
+            throw new CancellationException("The scan was interrupted");
+        }
+    }
+
+    /**
+     * Scans one range of rows, forking the halves it splits off.
+     */
+    private static final class ScanTask extends RecursiveAction {
+
+        private final RowRange rows;
+        private final IntPredicate matches;
+        private final long[] words;
+        // The tasks run on pool threads, so they check whether the thread waiting for them was interrupted
+        private final Thread caller;
+
+        ScanTask(RowRange rows, IntPredicate matches, long[] words, Thread caller) {
+            this.rows = rows;
+            this.matches = matches;
+            this.words = words;
+            this.caller = caller;
+        }
+
+        @Override
+        protected void compute() {
+            List<ScanTask> forked = new ArrayList<>();
+            Spliterator.OfInt prefix;
+            while (rows.estimateSize() > LEAF_SIZE && (prefix = rows.trySplit()) != null) {
+                ScanTask task = new ScanTask((RowRange) prefix, matches, words, caller);
+                task.fork();
+                forked.add(task);
+            }
+            checkInterrupt(caller);
+            rows.forEachRemaining((int row) -> {
+                if (matches.test(row)) {
+                    words[row >>> 6] |= 1L << row;
+                }
+            });
+            for (ScanTask task : forked) {
+                task.join();
+            }
+        }
+    }
+
+    /**
+     * The positions {@code [from, to)}, split at multiples of 64.
+     */
+    private static final class RowRange implements Spliterator.OfInt {
+
+        private int from;
+        private final int to;
+
+        RowRange(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            int mid = ((from + to) >>> 1) & ~63;
+            if (mid <= from) {
+                return null;
+            }
+            RowRange prefix = new RowRange(from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(from++);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            for (int row = from; row < to; row++) {
+                action.accept(row);
+            }
+            from = to;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | DISTINCT | SORTED | NONNULL | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,13 @@
+package model;
+
+/**
+ * The length of the time buckets of a rollup, in the system time zone.
+ */
+public enum Granularity {
+  /** Calendar days, starting at midnight. */
+  DAY,
+  /** Weeks starting on Monday. */
+  WEEK,
+  /** Calendar months, starting on the first day. */
+  MONTH
+}
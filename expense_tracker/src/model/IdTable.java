@@ -0,0 +1,102 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table from transaction id to slot, used by the {@link TransactionStore}
+ * to find a row by id in O(1) without boxing. Ids are positive, 0 marks an empty entry.
+ */
+final class IdTable {
+
+  private long[] ids = new long[16];
+  private int[] slots = new int[16];
+  private int size;
+
+  /**
+   * @param id The id to look up.
+   * @return The slot of the id, or -1 if it is not in the table.
+   */
+  int get(long id) {
+    int mask = ids.length - 1;
+    for (int i = hash(id) & mask; ids[i] != 0; i = (i + 1) & mask) {
+      if (ids[i] == id) {
+        return slots[i];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Maps an id to a slot, replacing its previous slot.
+   *
+   * @param id   The id.
+   * @param slot The slot holding it.
+   */
+  void put(long id, int slot) {
+    int mask = ids.length - 1;
+    for (int i = hash(id) & mask; ids[i] != 0; i = (i + 1) & mask) {
+      if (ids[i] == id) {
+        slots[i] = slot;
+        return;
+      }
+    }
+    putIfAbsent(id, slot);
+  }
+
+  /**
+   * Maps an id to a slot, unless the id is already mapped.
+   *
+   * @param id   The id.
+   * @param slot The slot holding it.
+   */
+  void putIfAbsent(long id, int slot) {
+    if ((size + 1) << 1 > ids.length) {
+      resize(ids.length << 1);
+    }
+    int mask = ids.length - 1;
+    int i = hash(id) & mask;
+    while (ids[i] != 0) {
+      if (ids[i] == id) {
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    ids[i] = id;
+    slots[i] = slot;
+    size++;
+  }
+
+  /**
+   * Removes all ids.
+   */
+  void clear() {
+    Arrays.fill(ids, 0);
+    size = 0;
+  }
+
+  /**
+   * @return The bytes held by the arrays of the table, including empty entries.
+   */
+  long footprint() {
+    return 12L * ids.length;
+  }
+
+  private void resize(int capacity) {
+    long[] oldIds = ids;
+    int[] oldSlots = slots;
+    ids = new long[capacity];
+    slots = new int[capacity];
+    size = 0;
+    for (int i = 0; i < oldIds.length; i++) {
+      if (oldIds[i] != 0) {
+        putIfAbsent(oldIds[i], oldSlots[i]);
+      }
+    }
+  }
+
+  private static int hash(long id) {
+    long h = id * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+}
@@ -0,0 +1,84 @@
+package model;
+
+/**
+ * Describes one change of an {@link ExpenseTrackerModel}, as published to its {@link ModelListener}s.
+ */
+public final class ModelEvent {
+
+  /**
+   * The kinds of change.
+   */
+  public enum Type {
+    /** Transactions were appended after the existing rows. */
+    ADDED,
+    /** Transactions were removed, the following rows moved up. */
+    REMOVED,
+    /** Removed transactions were added back, possibly in their previous rows. */
+    RESTORED
+  }
+
+  private final Type type;
+  private final int firstRow;
+  private final int count;
+  private final int[] rows;
+  private final long version;
+
+  /**
+   * @param type     The kind of change.
+   * @param firstRow The row of the first appended transaction, or -1 if the change is not an append.
+   * @param count    The number of transactions changed.
+   * @param rows     The removed or restored rows, ascending, or {@code null} if they are not known.
+   * @param version  The version of the model after the change.
+   */
+  ModelEvent(Type type, int firstRow, int count, int[] rows, long version) {
+    this.type = type;
+    this.firstRow = firstRow;
+    this.count = count;
+    this.rows = rows;
+    this.version = version;
+  }
+
+  /**
+   * @return The kind of change.
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * @return The row of the first appended transaction, the others follow it, or -1 if the change is not {@link Type#ADDED}.
+   */
+  public int getFirstRow() {
+    return firstRow;
+  }
+
+  /**
+   * @return The number of transactions added, removed or restored.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * @return The rows of the removed transactions before the change, or of the restored transactions
+   *         after it, ascending. {@code null} for {@link Type#ADDED}, or if the model had no listener
+   *         when the change was made.
+   */
+  public int[] getRows() {
+    return rows == null ? null : rows.clone();
+  }
+
+  /**
+   * @return The version of the model after the change. Each change increments the version by one,
+   *         so consecutive versions tell whether a listener has seen every change.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  @Override
+  public String toString() {
+    return type + " " + count + (firstRow >= 0 ? " at row " + firstRow : "");
+  }
+
+}
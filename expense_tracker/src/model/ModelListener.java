@@ -0,0 +1,18 @@
+package model;
+
+/**
+ * Receives the changes of an {@link ExpenseTrackerModel}.
+ * <p>
+ * Listeners are called on the thread which made the change, after it is visible in the snapshots,
+ * so they have to be thread-safe and quick, e.g. only schedule an update of the view.
+ * </p>
+ */
+@FunctionalInterface
+public interface ModelListener {
+
+  /**
+   * @param event The change.
+   */
+  void modelChanged(ModelEvent event);
+
+}
@@ -0,0 +1,484 @@
+package model.Persistence;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import controller.InputValidation;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+
+/**
+ * Imports historical transactions from a CSV or TSV file.
+ * <p>
+ * Every line holds an amount, a category and optionally a time, either in epoch milliseconds
+ * or in the {@link Transaction#TIMESTAMP_FORMATTER} format. Lines without a time are stamped
+ * with the time of the import.
+ * </p>
+ * <p>
+ * The file is read in chunks of whole lines, which are parsed in parallel and added to the model
+ * in file order, one batch per chunk. Only a few chunks are in flight at a time, so the memory used
+ * does not depend on the size of the file. Invalid lines are skipped and reported.
+ * </p>
+ */
+public final class CsvImporter {
+
+  // Rejections beyond this are only counted
+  private static final int MAX_REPORTED_REJECTIONS = 1000;
+
+  private byte delimiter = ',';
+  private boolean header;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private int chunkSize = 1 << 20;
+  private ProgressListener progressListener;
+
+  /**
+   * Receives the progress of an import after every batch added to the model.
+   */
+  public interface ProgressListener {
+    /**
+     * @param bytesRead     The number of bytes of the file imported so far.
+     * @param totalBytes    The size of the file.
+     * @param rowsImported  The number of transactions added so far.
+     */
+    void progress(long bytesRead, long totalBytes, long rowsImported);
+  }
+
+  /**
+   * @param delimiter The character separating the fields, {@code ','} by default and {@code '\t'} for TSV.
+   * @return This importer.
+   */
+  public CsvImporter setDelimiter(char delimiter) {
+    if (delimiter > 0x7F || delimiter == '\n' || delimiter == '\r' || delimiter == '"') {
+      throw new IllegalArgumentException("Invalid delimiter");
+    }
+    this.delimiter = (byte) delimiter;
+    return this;
+  }
+
+  /**
+   * @param header {@code true} if the first line holds column names and must be skipped.
+   * @return This importer.
+   */
+  public CsvImporter setHeader(boolean header) {
+    this.header = header;
+    return this;
+  }
+
+  /**
+   * @param threads The number of threads parsing the file, the number of cores by default.
+   * @return This importer.
+   */
+  public CsvImporter setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid number of threads");
+    }
+    this.threads = threads;
+    return this;
+  }
+
+  /**
+   * @param chunkSize The number of bytes read and parsed at once, 1 MiB by default.
+   * @return This importer.
+   */
+  public CsvImporter setChunkSize(int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Invalid chunk size");
+    }
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  /**
+   * @param progressListener Notified after every batch, or {@code null}.
+   * @return This importer.
+   */
+  public CsvImporter setProgressListener(ProgressListener progressListener) {
+    this.progressListener = progressListener;
+    return this;
+  }
+
+  /**
+   * Imports the transactions of a file into a model.
+   *
+   * @param path  The file to import.
+   * @param model The model to add the transactions to.
+   * @return The number of imported transactions and the rejected lines.
+   * @throws IOException if the file cannot be read.
+   */
+  public ImportReport importFile(Path path, ExpenseTrackerModel model) throws IOException {
+    return importFile(path, model::addTransactions);
+  }
+
+  /**
+   * Imports the transactions of a file, passing them to a sink one batch per chunk in file order.
+   *
+   * @param path The file to import.
+   * @param sink Adds each batch of valid transactions, on the calling thread.
+   * @return The number of imported transactions and the rejected lines.
+   * @throws IOException if the file cannot be read.
+   */
+  public ImportReport importFile(Path path, Consumer<List<Transaction>> sink) throws IOException {
+    long importTime = System.currentTimeMillis();
+    ImportReport report = new ImportReport();
+    ExecutorService parsers = Executors.newFixedThreadPool(threads, r -> {
+      Thread thread = new Thread(r, "csv-import");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long totalBytes = channel.size();
+      Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+      ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+      boolean first = true;
+      boolean eof = false;
+      while (!eof) {
+        eof = channel.read(buffer) < 0;
+        if (!eof && buffer.hasRemaining()) {
+          continue;
+        }
+        int end = eof ? buffer.position() : lastLineEnd(buffer);
+        if (end < 0) {
+          // A single line longer than the buffer
+          buffer = ByteBuffer.allocate(buffer.capacity() << 1).put(buffer.flip());
+          continue;
+        }
+        byte[] lines = Arrays.copyOf(buffer.array(), end);
+        boolean skipHeader = first && header;
+        inFlight.add(parsers.submit(() -> parse(lines, skipHeader, importTime)));
+        first = false;
+        buffer.flip().position(end);
+        buffer.compact();
+
+        // Bounded number of chunks in memory, consumed in file order
+        while (inFlight.size() > threads || (eof && !inFlight.isEmpty())) {
+          apply(await(inFlight.poll()), sink, report, totalBytes);
+        }
+      }
+    } finally {
+      parsers.shutdownNow();
+    }
+    return report;
+  }
+
+  private void apply(Chunk chunk, Consumer<List<Transaction>> sink, ImportReport report, long totalBytes) {
+    if (!chunk.transactions.isEmpty()) {
+      sink.accept(chunk.transactions);
+    }
+    for (int i = 0; i < chunk.rejectedCount; i++) {
+      report.reject(report.lines + chunk.rejectedLines[i], chunk.rejectedReasons[i]);
+    }
+    report.lines += chunk.lineCount;
+    report.bytes += chunk.byteCount;
+    report.rowsImported += chunk.transactions.size();
+    if (progressListener != null) {
+      progressListener.progress(report.bytes, totalBytes, report.rowsImported);
+    }
+  }
+
+  private static Chunk await(Future<Chunk> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Import interrupted");
+    } catch (ExecutionException e) {
+      throw new IOException("Cannot parse the file", e.getCause());
+    }
+  }
+
+  // Position after the last newline in the filled part of the buffer, or -1 if there is none
+  private static int lastLineEnd(ByteBuffer buffer) {
+    byte[] bytes = buffer.array();
+    for (int i = buffer.position() - 1; i >= 0; i--) {
+      if (bytes[i] == '\n') {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Parses a chunk of whole lines. Runs on the parser threads and only touches the chunk.
+   */
+  private Chunk parse(byte[] bytes, boolean skipHeader, long importTime) {
+    Chunk chunk = new Chunk(bytes.length);
+    int[] fields = new int[6];
+    int start = 0;
+    while (start < bytes.length) {
+      int end = start;
+      while (end < bytes.length && bytes[end] != '\n') {
+        end++;
+      }
+      int line = chunk.lineCount++;
+      if (line == 0 && skipHeader) {
+        start = end + 1;
+        continue;
+      }
+      int lineEnd = end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+      if (lineEnd > start) {
+        parseLine(bytes, start, lineEnd, fields, chunk, line, importTime);
+      }
+      start = end + 1;
+    }
+    return chunk;
+  }
+
+  private void parseLine(byte[] bytes, int start, int end, int[] fields, Chunk chunk, int line, long importTime) {
+    // Start and end of the first three fields, trimmed of blanks and quotes
+    int count = 0;
+    int from = start;
+    for (int i = start; i <= end; i++) {
+      if (i == end || bytes[i] == delimiter) {
+        if (count == 3) {
+          chunk.reject(line, "Too many fields");
+          return;
+        }
+        int a = from;
+        int b = i;
+        while (a < b && isBlank(bytes[a])) {
+          a++;
+        }
+        while (b > a && isBlank(bytes[b - 1])) {
+          b--;
+        }
+        if (b - a >= 2 && bytes[a] == '"' && bytes[b - 1] == '"') {
+          a++;
+          b--;
+        }
+        fields[2 * count] = a;
+        fields[2 * count + 1] = b;
+        count++;
+        from = i + 1;
+      }
+    }
+    if (count < 2) {
+      chunk.reject(line, "Missing category");
+      return;
+    }
+
+    double amount = parseAmount(bytes, fields[0], fields[1]);
+    if (!InputValidation.isValidAmount(amount)) {
+      chunk.reject(line, "The amount is not valid.");
+      return;
+    }
+    int categoryLength = fields[3] - fields[2];
+    String category = InputValidation.validCategory(bytes, fields[2], categoryLength);
+    if (category == null) {
+      chunk.reject(line, "The category is not valid.");
+      return;
+    }
+    if (!matches(category, bytes, fields[2])) {
+      // Keep the spelling of the file, the common lower case spelling shares one string
+      category = new String(bytes, fields[2], categoryLength, StandardCharsets.US_ASCII);
+    }
+    long time = importTime;
+    if (count == 3 && fields[5] > fields[4]) {
+      time = parseTime(bytes, fields[4], fields[5]);
+      if (time == Long.MIN_VALUE) {
+        chunk.reject(line, "The time is not valid.");
+        return;
+      }
+    }
+    chunk.transactions.add(new Transaction(amount, category, time));
+  }
+
+  /**
+   * Parses a plain decimal amount without creating a string, falling back to
+   * {@link Double#parseDouble(String)} for anything else.
+   *
+   * @return The amount, or {@code NaN} if it is not a number.
+   */
+  static double parseAmount(byte[] bytes, int from, int to) {
+    int i = from;
+    boolean negative = i < to && bytes[i] == '-';
+    if (negative || (i < to && bytes[i] == '+')) {
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = -1;
+    for (; i < to; i++) {
+      byte b = bytes[i];
+      if (b >= '0' && b <= '9') {
+        mantissa = mantissa * 10 + (b - '0');
+        digits++;
+        if (scale >= 0) {
+          scale++;
+        }
+      } else if (b == '.' && scale < 0) {
+        scale = 0;
+      } else {
+        break;
+      }
+    }
+    // Exact when the mantissa and the power of ten are both exact doubles
+    if (i == to && digits > 0 && digits <= 15 && scale <= 22) {
+      double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+      return negative ? -value : value;
+    }
+    try {
+      return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /**
+   * @return The epoch milliseconds, or {@code Long.MIN_VALUE} if the time is not valid.
+   */
+  private static long parseTime(byte[] bytes, int from, int to) {
+    if (to - from <= 18) {
+      long millis = 0;
+      int i = from;
+      while (i < to && bytes[i] >= '0' && bytes[i] <= '9') {
+        millis = millis * 10 + (bytes[i++] - '0');
+      }
+      if (i == to) {
+        return millis;
+      }
+    }
+    try {
+      String text = new String(bytes, from, to - from, StandardCharsets.US_ASCII);
+      return Transaction.TIMESTAMP_FORMATTER.parse(text, Instant::from).toEpochMilli();
+    } catch (DateTimeParseException e) {
+      return Long.MIN_VALUE;
+    }
+  }
+
+  private static boolean isBlank(byte b) {
+    return b == ' ' || b == '\t';
+  }
+
+  private static boolean matches(String word, byte[] bytes, int from) {
+    for (int i = 0; i < word.length(); i++) {
+      if (bytes[from + i] != word.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The result of parsing one chunk, with line numbers relative to the chunk.
+   */
+  private static final class Chunk {
+
+    final int byteCount;
+    final List<Transaction> transactions = new ArrayList<>();
+    int lineCount;
+    int[] rejectedLines = new int[0];
+    String[] rejectedReasons = new String[0];
+    int rejectedCount;
+
+    Chunk(int byteCount) {
+      this.byteCount = byteCount;
+    }
+
+    void reject(int line, String reason) {
+      if (rejectedCount == rejectedLines.length) {
+        rejectedLines = Arrays.copyOf(rejectedLines, Math.max(4, rejectedCount << 1));
+        rejectedReasons = Arrays.copyOf(rejectedReasons, rejectedLines.length);
+      }
+      rejectedLines[rejectedCount] = line;
+      rejectedReasons[rejectedCount] = reason;
+      rejectedCount++;
+    }
+  }
+
+  /**
+   * Outcome of an import: how many transactions were added and which lines were skipped.
+   */
+  public static final class ImportReport {
+
+    private final List<RejectedLine> rejections = new ArrayList<>();
+    private long rowsImported;
+    private long rejectedCount;
+    private long lines;
+    private long bytes;
+
+    private void reject(long lineIndex, String reason) {
+      if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+        rejections.add(new RejectedLine(lineIndex + 1, reason));
+      }
+      rejectedCount++;
+    }
+
+    /**
+     * @return The number of transactions added to the model.
+     */
+    public long getRowsImported() {
+      return rowsImported;
+    }
+
+    /**
+     * @return The number of lines which were skipped because they are not valid.
+     */
+    public long getRejectedCount() {
+      return rejectedCount;
+    }
+
+    /**
+     * @return The first rejected lines in file order, at most 1000 of them.
+     */
+    public List<RejectedLine> getRejections() {
+      return Collections.unmodifiableList(rejections);
+    }
+  }
+
+  /**
+   * A line of the file which was not imported.
+   */
+  public static final class RejectedLine {
+
+    private final long line;
+    private final String reason;
+
+    RejectedLine(long line, String reason) {
+      this.line = line;
+      this.reason = reason;
+    }
+
+    /**
+     * @return The line number, starting at 1.
+     */
+    public long getLine() {
+      return line;
+    }
+
+    /**
+     * @return Why the line was not imported.
+     */
+    public String getReason() {
+      return reason;
+    }
+
+    @Override
+    public String toString() {
+      return "line " + line + ": " + reason;
+    }
+  }
+
+}
@@ -0,0 +1,235 @@
+package model.Persistence;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.CategoryRegistry;
+import model.TransactionSnapshot;
+
+/**
+ * Compact, versioned binary snapshot of the model's columns.
+ * <p>
+ * The file holds a header, the category dictionary, and then the amount, time and category
+ * columns as contiguous primitive arrays. It is read through a {@link MappedByteBuffer} and each
+ * column is copied once, in bulk, so opening a ledger never creates a {@code Transaction} per row.
+ * </p>
+ * <pre>
+ * int    magic            "ETSN"
+ * int    format version   1
+ * int    row count n
+ * int    category count c
+ * c x    [short length][UTF-8 bytes]
+ *        zero padding to a multiple of 8
+ * n x    double amount
+ * n x    long   epoch milliseconds
+ * n x    int    category code
+ * </pre>
+ */
+public final class SnapshotFile {
+
+  private static final int MAGIC = 0x4554534E; // "ETSN"
+  private static final int FORMAT_VERSION = 1;
+
+  private SnapshotFile() {
+  }
+
+  /**
+   * The columns read from a snapshot file.
+   */
+  public static final class Columns {
+
+    private final String[] categories;
+    private final double[] amounts;
+    private final long[] times;
+    private final int[] categoryCodes;
+
+    Columns(String[] categories, double[] amounts, long[] times, int[] categoryCodes) {
+      this.categories = categories;
+      this.amounts = amounts;
+      this.times = times;
+      this.categoryCodes = categoryCodes;
+    }
+
+    /**
+     * @return The dictionary of categories, indexed by the codes of {@link #getCategoryCodes()}.
+     */
+    public String[] getCategories() {
+      return categories;
+    }
+
+    /**
+     * @return The amount of each row.
+     */
+    public double[] getAmounts() {
+      return amounts;
+    }
+
+    /**
+     * @return The epoch milliseconds of each row.
+     */
+    public long[] getTimes() {
+      return times;
+    }
+
+    /**
+     * @return The category code of each row.
+     */
+    public int[] getCategoryCodes() {
+      return categoryCodes;
+    }
+
+    /**
+     * @return The number of rows.
+     */
+    public int size() {
+      return amounts.length;
+    }
+  }
+
+  /**
+   * Writes the rows of a snapshot to a file, replacing its previous content.
+   * The rows are written to a temporary file next to it, which is forced to disk and then
+   * atomically renamed, so a crash while writing leaves the previous file intact.
+   *
+   * @param snapshot The rows to write.
+   * @param path     The file to write.
+   * @throws IOException if the file cannot be written.
+   */
+  public static void write(TransactionSnapshot snapshot, Path path) throws IOException {
+    int size = snapshot.size();
+    int[] codes = new int[size];
+    Map<String, Integer> dictionary = new HashMap<>();
+    List<byte[]> categories = new ArrayList<>();
+    int dictionaryBytes = 0;
+    for (int row = 0; row < size; row++) {
+      String category = snapshot.getCategory(row);
+      Integer code = dictionary.get(category);
+      if (code == null) {
+        code = categories.size();
+        dictionary.put(category, code);
+        byte[] bytes = category.getBytes(StandardCharsets.UTF_8);
+        categories.add(bytes);
+        dictionaryBytes += 2 + bytes.length;
+      }
+      codes[row] = code;
+    }
+
+    int columnsStart = align(16 + dictionaryBytes);
+    long fileSize = columnsStart + (long) size * (8 + 8 + 4);
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try {
+      writeColumns(snapshot, codes, categories, columnsStart, fileSize, temporary);
+      Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private static void writeColumns(TransactionSnapshot snapshot, int[] codes, List<byte[]> categories,
+      int columnsStart, long fileSize, Path path) throws IOException {
+    int size = codes.length;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+      buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(size).putInt(categories.size());
+      for (byte[] bytes : categories) {
+        buffer.putShort((short) bytes.length).put(bytes);
+      }
+      buffer.position(columnsStart);
+      for (int row = 0; row < size; row++) {
+        buffer.putDouble(snapshot.getAmount(row));
+      }
+      for (int row = 0; row < size; row++) {
+        buffer.putLong(snapshot.getTimeMillis(row));
+      }
+      buffer.asIntBuffer().put(codes);
+      buffer.force();
+    }
+  }
+
+  /**
+   * Reads the columns of a snapshot file.
+   *
+   * @param path The file to read.
+   * @return The columns of the file.
+   * @throws IOException if the file cannot be read, is not a snapshot of a supported version, is corrupt,
+   *                     or holds a category which is not registered.
+   */
+  public static Columns read(Path path) throws IOException {
+    try {
+      return readColumns(path);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated transaction snapshot: " + path, e);
+    }
+  }
+
+  private static Columns readColumns(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+        throw new IOException("Not a transaction snapshot: " + path);
+      }
+      int version = buffer.getInt();
+      if (version != FORMAT_VERSION) {
+        throw new IOException("Unsupported snapshot version " + version + ": " + path);
+      }
+      int size = buffer.getInt();
+      int categoryCount = buffer.getInt();
+      // Every category takes at least its two byte length
+      if (size < 0 || categoryCount < 0 || categoryCount > buffer.remaining() / 2) {
+        throw new IOException("Corrupt transaction snapshot header: " + path);
+      }
+      String[] categories = new String[categoryCount];
+      for (int code = 0; code < categories.length; code++) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        categories[code] = new String(bytes, StandardCharsets.UTF_8);
+        if (CategoryRegistry.codeOf(categories[code]) == CategoryRegistry.UNKNOWN) {
+          throw new IOException("Unknown category " + categories[code] + " in transaction snapshot: " + path);
+        }
+      }
+      // Offsets are computed as long, so a corrupt row count cannot wrap around the checks
+      long amountsStart = align(buffer.position());
+      long timesStart = amountsStart + 8L * size;
+      long codesStart = timesStart + 8L * size;
+      if (buffer.capacity() < codesStart + 4L * size) {
+        throw new IOException("Truncated transaction snapshot: " + path);
+      }
+
+      double[] amounts = new double[size];
+      long[] times = new long[size];
+      int[] codes = new int[size];
+      column(buffer, amountsStart, size * 8).asDoubleBuffer().get(amounts);
+      column(buffer, timesStart, size * 8).asLongBuffer().get(times);
+      column(buffer, codesStart, size * 4).asIntBuffer().get(codes);
+      for (int code : codes) {
+        if (code < 0 || code >= categories.length) {
+          throw new IOException("Corrupt category code " + code + " in transaction snapshot: " + path);
+        }
+      }
+      return new Columns(categories, amounts, times, codes);
+    }
+  }
+
+  // The offsets were checked against the capacity of the buffer, so they fit in an int
+  private static ByteBuffer column(ByteBuffer buffer, long start, int length) {
+    return buffer.slice((int) start, length);
+  }
+
+  private static int align(int position) {
+    return (position + 7) & ~7;
+  }
+
+}
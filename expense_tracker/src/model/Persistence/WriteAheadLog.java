@@ -0,0 +1,314 @@
+package model.Persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import model.CategoryRegistry;
+
+/**
+ * Append-only binary write-ahead log of the changes made to the model.
+ * <p>
+ * Every change is encoded as a record {@code [length][type][id][amount][time][category][crc32]} and
+ * appended to an in-memory buffer. A background flusher writes the buffer to the file and forces
+ * it to disk, so one {@code fsync} commits the records of all writers that arrived in the
+ * meantime (group commit). A record waits at most the configured latency bound before its flush
+ * starts, and a writer calls {@link #awaitDurable(long)} to block until its record is on disk.
+ * </p>
+ * <p>
+ * On startup, {@link #replay(Handler)} feeds the logged changes back in order. A torn record at the
+ * end of the file, left by a crash in the middle of a write, is detected by its checksum and cut off.
+ * </p>
+ */
+public class WriteAheadLog implements Closeable {
+
+  /** Record type of an added transaction. */
+  public static final byte ADD = 1;
+  /** Record type of a removed transaction. */
+  public static final byte REMOVE = 2;
+
+  private static final int BUFFER_SIZE = 1 << 20;
+  // type, id, amount, time and the length of the category
+  private static final int FIXED_PAYLOAD = 1 + 8 + 8 + 8 + 2;
+
+  /**
+   * Receives the changes read back by {@link #replay(Handler)}.
+   */
+  public interface Handler {
+    /**
+     * @param type     {@link #ADD} or {@link #REMOVE}
+     * @param id       the id of the transaction
+     * @param amount   the amount of the transaction
+     * @param category the category of the transaction
+     * @param time     the epoch milliseconds at which the transaction was created
+     */
+    void apply(byte type, long id, double amount, String category, long time);
+  }
+
+  private final FileChannel channel;
+  private final long maxLatencyNanos;
+  private final Thread flusher;
+  private final CRC32 crc = new CRC32();
+
+  // Guarded by this: the buffer being filled, and the sequence numbers of the records
+  private ByteBuffer active = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private ByteBuffer flushing = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private long appendedSequence;
+  private long durableSequence;
+  private long oldestPendingNanos;
+  private boolean urgent;
+  private boolean replayed;
+  private boolean closed;
+  private IOException failure;
+
+  /**
+   * Opens the log at the given path, creating the file if needed.
+   *
+   * @param path       The file of the log.
+   * @param maxLatency How long a record may wait for other writers before its flush starts.
+   * @param unit       The unit of {@code maxLatency}.
+   * @throws IOException if the file cannot be opened.
+   */
+  public WriteAheadLog(Path path, long maxLatency, TimeUnit unit) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    this.maxLatencyNanos = unit.toNanos(maxLatency);
+    this.flusher = new Thread(this::flushLoop, "wal-flusher");
+    this.flusher.setDaemon(true);
+  }
+
+  /**
+   * Reads every record of the log in order and positions the log at its end for new appends.
+   * Must be called once, before the first {@link #append}. Custom categories of the log must be
+   * registered with {@link CategoryRegistry} first, reading does not register them.
+   *
+   * @param handler Receives the changes.
+   * @return The number of records read.
+   * @throws IOException if the file cannot be read, or holds a category which is not registered.
+   */
+  public synchronized long replay(Handler handler) throws IOException {
+    if (replayed) {
+      throw new IllegalStateException("The log has already been replayed.");
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    long validEnd = 0;
+    long count = 0;
+    channel.position(0);
+    boolean torn = false;
+    while (!torn && channel.read(buffer) > 0) {
+      buffer.flip();
+      while (buffer.remaining() >= 4) {
+        int start = buffer.position();
+        int length = buffer.getInt(start);
+        if (length < FIXED_PAYLOAD || length > BUFFER_SIZE - 8) {
+          torn = true;
+          break;
+        }
+        if (buffer.remaining() < 4 + length + 4) {
+          break;
+        }
+        crc.reset();
+        crc.update(buffer.array(), start + 4, length);
+        if ((int) crc.getValue() != buffer.getInt(start + 4 + length)) {
+          torn = true;
+          break;
+        }
+        byte type = buffer.get(start + 4);
+        long id = buffer.getLong(start + 5);
+        double amount = buffer.getDouble(start + 13);
+        long time = buffer.getLong(start + 21);
+        int categoryLength = buffer.getShort(start + 29) & 0xFFFF;
+        String category = new String(buffer.array(), start + 31, categoryLength, StandardCharsets.UTF_8);
+        if (CategoryRegistry.codeOf(category) == CategoryRegistry.UNKNOWN) {
+          throw new IOException("Unknown category " + category + " in write-ahead log");
+        }
+        handler.apply(type, id, amount, category, time);
+        count++;
+        buffer.position(start + 4 + length + 4);
+        validEnd += 4 + length + 4;
+      }
+      buffer.compact();
+    }
+    // Cut off a torn tail so that new records follow the last complete one
+    channel.truncate(validEnd);
+    channel.position(validEnd);
+    replayed = true;
+    flusher.start();
+    return count;
+  }
+
+  /**
+   * Appends a record to the log. The record is not durable before {@link #awaitDurable(long)}
+   * returns for the sequence number returned here.
+   *
+   * @param type     {@link #ADD} or {@link #REMOVE}
+   * @param id       the id of the transaction
+   * @param amount   the amount of the transaction
+   * @param category the category of the transaction
+   * @param time     the epoch milliseconds at which the transaction was created
+   * @return The sequence number of the record.
+   */
+  public synchronized long append(byte type, long id, double amount, String category, long time) {
+    if (!replayed) {
+      throw new IllegalStateException("The log must be replayed before appending.");
+    }
+    byte[] categoryBytes = category.getBytes(StandardCharsets.UTF_8);
+    int length = FIXED_PAYLOAD + categoryBytes.length;
+    boolean interrupted = false;
+    while (active.remaining() < 4 + length + 4) {
+      // Back pressure: wait for the flusher to swap the buffers
+      checkOpen();
+      urgent = true;
+      notifyAll();
+      interrupted |= waitUninterruptibly();
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    checkOpen();
+    if (active.position() == 0) {
+      oldestPendingNanos = System.nanoTime();
+    }
+    int start = active.position();
+    active.putInt(length);
+    active.put(type);
+    active.putLong(id);
+    active.putDouble(amount);
+    active.putLong(time);
+    active.putShort((short) categoryBytes.length);
+    active.put(categoryBytes);
+    crc.reset();
+    crc.update(active.duplicate().position(start + 4).limit(start + 4 + length));
+    active.putInt((int) crc.getValue());
+    if (active.position() > BUFFER_SIZE / 2) {
+      urgent = true;
+    }
+    notifyAll();
+    return ++appendedSequence;
+  }
+
+  /**
+   * Blocks until the record with the given sequence number, and every record before it, is on disk.
+   *
+   * @param sequence A sequence number returned by {@link #append}.
+   * @throws UncheckedIOException if the log could not be written.
+   */
+  public synchronized void awaitDurable(long sequence) {
+    boolean interrupted = false;
+    try {
+      while (durableSequence < sequence) {
+        if (failure != null) {
+          throw new UncheckedIOException(failure);
+        }
+        interrupted |= waitUninterruptibly();
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Flushes the pending records and closes the file.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      notifyAll();
+    }
+    if (flusher.isAlive()) {
+      try {
+        flusher.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    channel.close();
+    synchronized (this) {
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+
+  private void flushLoop() {
+    while (true) {
+      long batchSequence;
+      synchronized (this) {
+        while (active.position() == 0 && !closed) {
+          waitUninterruptibly();
+        }
+        if (active.position() == 0) {
+          return;
+        }
+        // Let more writers join the group until the oldest record reaches the latency bound
+        long remaining;
+        while (!urgent && !closed
+            && (remaining = oldestPendingNanos + maxLatencyNanos - System.nanoTime()) > 0) {
+          try {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+          } catch (InterruptedException e) {
+            // The flusher is only stopped through close()
+          }
+        }
+        ByteBuffer full = active;
+        active = flushing;
+        flushing = full;
+        urgent = false;
+        batchSequence = appendedSequence;
+        notifyAll();
+      }
+      try {
+        flushing.flip();
+        while (flushing.hasRemaining()) {
+          channel.write(flushing);
+        }
+        channel.force(false);
+        flushing.clear();
+      } catch (IOException e) {
+        synchronized (this) {
+          failure = e;
+          closed = true;
+          notifyAll();
+        }
+        return;
+      }
+      synchronized (this) {
+        durableSequence = batchSequence;
+        notifyAll();
+      }
+    }
+  }
+
+  private void checkOpen() {
+    if (failure != null) {
+      throw new UncheckedIOException(failure);
+    }
+    if (closed) {
+      throw new IllegalStateException("The log is closed.");
+    }
+  }
+
+  // Returns whether the wait was interrupted, so the caller can restore the flag once it is done
+  private boolean waitUninterruptibly() {
+    try {
+      wait();
+      return false;
+    } catch (InterruptedException e) {
+      return true;
+    }
+  }
+
+}
@@ -0,0 +1,79 @@
+package model;
+
+import java.util.BitSet;
+
+/**
+ * Maps the positions of the live rows of a {@link TransactionSnapshot} to the slots of the
+ * store's columns, which also hold removed rows until they are compacted.
+ * <p>
+ * It keeps the number of live slots before every 64-slot word, so mapping a slot to its
+ * position is a population count, and for every 64 positions the word holding the first
+ * of them, so mapping a position to its slot only scans a few words.
+ * </p>
+ */
+final class SlotMap {
+
+  private final long[] live;
+  // Number of live slots before each word, with one extra entry for the total
+  private final int[] liveBefore;
+  // The word holding each 64th position
+  private final int[] wordOfBlock;
+
+  /**
+   * @param removed   The removed slots.
+   * @param slotCount The number of slots.
+   */
+  SlotMap(BitSet removed, int slotCount) {
+    int words = (slotCount + 63) >>> 6;
+    live = new long[words];
+    long[] removedWords = removed.toLongArray();
+    liveBefore = new int[words + 1];
+    for (int w = 0; w < words; w++) {
+      long word = w < removedWords.length ? ~removedWords[w] : -1L;
+      if (w == words - 1 && (slotCount & 63) != 0) {
+        word &= (1L << slotCount) - 1;
+      }
+      live[w] = word;
+      liveBefore[w + 1] = liveBefore[w] + Long.bitCount(word);
+    }
+    int positions = liveBefore[words];
+    wordOfBlock = new int[(positions + 63) >>> 6];
+    int w = 0;
+    for (int block = 0; block < wordOfBlock.length; block++) {
+      while (liveBefore[w + 1] <= block << 6) {
+        w++;
+      }
+      wordOfBlock[block] = w;
+    }
+  }
+
+  /**
+   * @param position The position of a live row.
+   * @return The slot of that row.
+   */
+  int slot(int position) {
+    int w = wordOfBlock[position >>> 6];
+    while (liveBefore[w + 1] <= position) {
+      w++;
+    }
+    long word = live[w];
+    // Drop the lower live slots of the word to reach the wanted one
+    for (int k = position - liveBefore[w]; k > 0; k--) {
+      word &= word - 1;
+    }
+    return (w << 6) + Long.numberOfTrailingZeros(word);
+  }
+
+  /**
+   * @param slot A slot.
+   * @return The position of the slot if it is live, otherwise {@code -1}.
+   */
+  int position(int slot) {
+    int w = slot >>> 6;
+    if (w >= live.length || (live[w] & (1L << slot)) == 0) {
+      return -1;
+    }
+    return liveBefore[w] + Long.bitCount(live[w] & ((1L << slot) - 1));
+  }
+
+}
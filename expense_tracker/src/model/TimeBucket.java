@@ -0,0 +1,43 @@
+package model;
+
+/**
+ * The spend of one time bucket of a rollup.
+ */
+public final class TimeBucket {
+
+  private final long start;
+  private final double total;
+  private final int count;
+
+  TimeBucket(long start, double total, int count) {
+    this.start = start;
+    this.total = total;
+    this.count = count;
+  }
+
+  /**
+   * @return The epoch milliseconds at which the bucket starts.
+   */
+  public long getStart() {
+    return start;
+  }
+
+  /**
+   * @return The sum of the amounts in the bucket.
+   */
+  public double getTotal() {
+    return total;
+  }
+
+  /**
+   * @return The number of transactions in the bucket.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  @Override
+  public String toString() {
+    return start + ": " + total + " (" + count + ")";
+  }
+}
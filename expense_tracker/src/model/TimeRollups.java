@@ -0,0 +1,159 @@
+package model;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Spend per category and time bucket, maintained by the {@link TransactionStore} for each
+ * {@link Granularity} so that reports read the buckets instead of scanning the transactions.
+ * <p>
+ * Buckets are kept in a {@link TreeMap} by their start, so a range of buckets is found in
+ * O(log buckets). The last day looked up is cached, which makes ingesting transactions in
+ * time order cheap, and buckets are dropped again when their last transaction is removed.
+ * </p>
+ */
+final class TimeRollups {
+
+  private final ZoneId zone;
+  private final Series[] series = new Series[Granularity.values().length];
+
+  // The last day looked up, [dayStart, dayEnd) with the starts of its buckets
+  private long dayStart = Long.MAX_VALUE;
+  private long dayEnd = Long.MIN_VALUE;
+  private final long[] bucketStarts = new long[Granularity.values().length];
+
+  TimeRollups(ZoneId zone) {
+    this.zone = zone;
+    for (int i = 0; i < series.length; i++) {
+      series[i] = new Series();
+    }
+  }
+
+  /**
+   * Records an added row.
+   *
+   * @param code   The category code of the row.
+   * @param amount The amount of the row.
+   * @param time   The epoch milliseconds of the row.
+   */
+  void add(int code, double amount, long time) {
+    locate(time);
+    for (int i = 0; i < series.length; i++) {
+      series[i].buckets.computeIfAbsent(bucketStarts[i], start -> new Bucket()).add(code, amount);
+    }
+  }
+
+  /**
+   * Records a removed row.
+   *
+   * @param code   The category code of the row.
+   * @param amount The amount of the row.
+   * @param time   The epoch milliseconds of the row.
+   */
+  void remove(int code, double amount, long time) {
+    locate(time);
+    for (int i = 0; i < series.length; i++) {
+      Bucket bucket = series[i].buckets.get(bucketStarts[i]);
+      if (bucket != null && bucket.remove(code, amount)) {
+        series[i].buckets.remove(bucketStarts[i]);
+      }
+    }
+  }
+
+  /**
+   * Reads the non-empty buckets which start in {@code [from, to)}.
+   *
+   * @param granularity The length of the buckets.
+   * @param category    The category code to include, or {@link CategoryRegistry#UNKNOWN} for all of them.
+   * @param from        The earliest bucket start, in epoch milliseconds.
+   * @param to          The bucket start to stop before, in epoch milliseconds.
+   * @return The buckets in ascending order.
+   */
+  List<TimeBucket> buckets(Granularity granularity, int category, long from, long to) {
+    List<TimeBucket> result = new ArrayList<>();
+    if (from >= to) {
+      return result;
+    }
+    for (Map.Entry<Long, Bucket> entry : series[granularity.ordinal()].buckets.subMap(from, to).entrySet()) {
+      Bucket bucket = entry.getValue();
+      Aggregates.Sum total = new Aggregates.Sum();
+      int count = 0;
+      for (int code = 0; code < bucket.counts.length; code++) {
+        if (bucket.counts[code] > 0 && (category == CategoryRegistry.UNKNOWN || code == category)) {
+          total.add(bucket.totals[code].value());
+          count += bucket.counts[code];
+        }
+      }
+      if (count > 0) {
+        result.add(new TimeBucket(entry.getKey(), total.value(), count));
+      }
+    }
+    return result;
+  }
+
+  // Updates the cached day and bucket starts to the ones holding the time
+  private void locate(long time) {
+    if (time >= dayStart && time < dayEnd) {
+      return;
+    }
+    LocalDate day = Instant.ofEpochMilli(time).atZone(zone).toLocalDate();
+    dayStart = startOf(day);
+    dayEnd = startOf(day.plusDays(1));
+    bucketStarts[Granularity.DAY.ordinal()] = dayStart;
+    bucketStarts[Granularity.WEEK.ordinal()] = startOf(day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)));
+    bucketStarts[Granularity.MONTH.ordinal()] = startOf(day.withDayOfMonth(1));
+  }
+
+  private long startOf(LocalDate day) {
+    return day.atStartOfDay(zone).toInstant().toEpochMilli();
+  }
+
+  /**
+   * The buckets of one granularity.
+   */
+  private static final class Series {
+    final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+  }
+
+  /**
+   * Total and count per category code within one bucket.
+   */
+  private static final class Bucket {
+
+    Aggregates.Sum[] totals = new Aggregates.Sum[4];
+    int[] counts = new int[4];
+    int count;
+
+    void add(int code, double amount) {
+      if (code >= counts.length) {
+        int length = Math.max(code + 1, counts.length << 1);
+        totals = Arrays.copyOf(totals, length);
+        counts = Arrays.copyOf(counts, length);
+      }
+      if (totals[code] == null) {
+        totals[code] = new Aggregates.Sum();
+      }
+      totals[code].add(amount);
+      counts[code]++;
+      count++;
+    }
+
+    // Returns true once the bucket is empty
+    boolean remove(int code, double amount) {
+      totals[code].add(-amount);
+      if (--counts[code] == 0) {
+        totals[code].clear();
+      }
+      return --count == 0;
+    }
+  }
+
+}
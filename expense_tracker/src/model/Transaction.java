@@ -3,22 +3,56 @@ package model;
 import controller.InputValidation;
 
 import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents the data model for the Transactions which contains the amount, category and timestam fields.
  */
 public class Transaction {
 
+  /**
+   * @deprecated SimpleDateFormat is not thread-safe and is no longer used to create timestamps.
+   * Kept so that existing callers can still parse the strings returned by {@link #getTimestamp()};
+   * new code should use {@link #TIMESTAMP_FORMATTER}.
+   */
+  @Deprecated
   public static final SimpleDateFormat dateFormatter = new SimpleDateFormat("dd-MM-yyyy HH:mm");
+
+  /**
+   * Immutable, thread-safe format of the strings returned by {@link #getTimestamp()}.
+   */
+  public static final DateTimeFormatter TIMESTAMP_FORMATTER =
+      DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm").withZone(ZoneId.systemDefault());
+
+  private static final long MILLIS_PER_MINUTE = 60_000L;
+  // Direct-mapped cache of formatted minutes, as most timestamps fall into a few recent minutes
+  private static final FormattedMinute[] TIMESTAMP_CACHE = new FormattedMinute[64];
+  private static final AtomicLong NEXT_ID = new AtomicLong(1);
     
   //final means that the variable cannot be changed
   private final double amount;
   private final String category;
-  private final String timestamp;
+  // The timestamp is kept as epoch milliseconds and only formatted when it is displayed
+  private final long time;
+  // Unique across all transactions created by this process, so a stored row can be found by it
+  private final long id;
 
   public Transaction(double amount, String category) {
+    this(amount, category, System.currentTimeMillis());
+  }
+
+  /**
+   * Creates a transaction which happened at the given time, e.g. when importing historical data.
+   *
+   * @param amount   Amount of the transaction.
+   * @param category Category of the transaction.
+   * @param time     Epoch milliseconds at which the transaction happened.
+   */
+  public Transaction(double amount, String category, long time) {
     // Since this is a public constructor, perform input validation
     // to guarantee that the amount and category are both valid
     if (InputValidation.isValidAmount(amount) == false) {
@@ -30,7 +64,59 @@ public class Transaction {
       
     this.amount = amount;
     this.category = category;
-    this.timestamp = generateTimestamp();
+    this.time = time;
+    this.id = NEXT_ID.getAndIncrement();
+  }
+
+  // Trusted constructor, which does not validate
+  private Transaction(double amount, String category, long time, long id) {
+    this.amount = amount;
+    this.category = category;
+    this.time = time;
+    this.id = id;
+  }
+
+  /**
+   * Recreates a transaction from a row of the {@link TransactionStore}.
+   * The values were validated when the row was first added, so they are not checked again.
+   *
+   * @param amount   Amount of the stored transaction.
+   * @param category Category of the stored transaction.
+   * @param time     Epoch milliseconds at which the transaction was created.
+   * @param id       Id of the stored transaction.
+   * @return The transaction of that row.
+   */
+  static Transaction fromStore(double amount, String category, long time, long id) {
+    return new Transaction(amount, category, time, id);
+  }
+
+  /**
+   * Recreates a transaction read back from a log, which keeps its logged id so that later
+   * records can refer to it. Ids handed out from now on are greater than the logged id.
+   *
+   * @param amount   Amount of the transaction.
+   * @param category Category of the transaction.
+   * @param time     Epoch milliseconds at which the transaction was created.
+   * @param id       Id of the transaction in the log.
+   * @return The transaction.
+   */
+  static Transaction fromLog(double amount, String category, long time, long id) {
+    NEXT_ID.accumulateAndGet(id + 1, Math::max);
+    return new Transaction(amount, category, time, id);
+  }
+
+  /**
+   * @return A new id, for rows which are not added through a {@link Transaction}.
+   */
+  static long nextId() {
+    return NEXT_ID.getAndIncrement();
+  }
+
+  /**
+   * @return The id of the transaction, which stays the same while it is stored in a model.
+   */
+  public long getId() {
+    return id;
   }
 
   /**
@@ -59,15 +145,65 @@ public class Transaction {
    * @return timestamp of the transaction
    */
   public String getTimestamp() {
-    return timestamp;
+    return generateTimestamp();
+  }
+
+  /**
+   * @return epoch milliseconds at which the transaction was created
+   */
+  public long getTimeMillis() {
+    return time;
   }
   //private helper method to generate timestamp
     /**
-   * Generates the Timestamp at the time transaction was added
+   * Formats the Timestamp at the time transaction was added
    * @return Formatted timestamp
    */
   private String generateTimestamp() {
-     return dateFormatter.format(new Date());
+    long minute = Math.floorDiv(time, MILLIS_PER_MINUTE);
+    int slot = (int) (minute & (TIMESTAMP_CACHE.length - 1));
+    // Racy but safe: entries are immutable, a lost update only costs another format
+    FormattedMinute cached = TIMESTAMP_CACHE[slot];
+    if (cached == null || cached.minute != minute) {
+      cached = new FormattedMinute(minute, TIMESTAMP_FORMATTER.format(Instant.ofEpochMilli(time)));
+      TIMESTAMP_CACHE[slot] = cached;
+    }
+    return cached.text;
+  }
+
+  // Transactions are materialized on demand from the store, so two instances
+  // describing the same row must be equal. The id only locates a row, two
+  // transactions with the same values are interchangeable.
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Transaction)) {
+      return false;
+    }
+    Transaction other = (Transaction) o;
+    return Double.compare(amount, other.amount) == 0
+        && time == other.time
+        && category.equals(other.category);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * Double.hashCode(amount) + category.hashCode()) + Long.hashCode(time);
+  }
+
+  /**
+   * A minute and its formatted text.
+   */
+  private static final class FormattedMinute {
+    private final long minute;
+    private final String text;
+
+    FormattedMinute(long minute, String text) {
+      this.minute = minute;
+      this.text = text;
+    }
   }
 
 }
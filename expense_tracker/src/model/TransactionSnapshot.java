@@ -0,0 +1,263 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.RandomAccess;
+
+/**
+ * Immutable, read-only view of the transactions as they were at one version of the model.
+ * <p>
+ * A snapshot shares the column arrays of the {@link TransactionStore} instead of copying them.
+ * The store only appends past the end of the columns, replaces them when compacting, and copies
+ * the tombstones of removed rows before changing a shared set, so a snapshot never observes
+ * writes made after it was taken.
+ * </p>
+ * <p>
+ * Row positions skip the removed slots of the columns. Without removed slots a position is
+ * its slot, otherwise the positions are mapped through a {@link SlotMap} built on first use.
+ * </p>
+ */
+public final class TransactionSnapshot extends AbstractList<Transaction> implements RandomAccess {
+
+  private final TransactionStore store;
+  private final CategoryDictionary categories;
+  private final double[] amounts;
+  private final int[] categoryCodes;
+  private final long[] times;
+  private final long[] ids;
+  private final int slotCount;
+  private final int size;
+  // null if no slot below slotCount is removed
+  private final BitSet removed;
+  private SlotMap slotMap;
+  private final long version;
+  private final long layout;
+  private final Aggregates aggregates;
+
+  TransactionSnapshot(TransactionStore store, CategoryDictionary categories, double[] amounts,
+      int[] categoryCodes, long[] times, long[] ids, int slotCount, int size, BitSet removed,
+      long version, long layout, Aggregates aggregates) {
+    this.store = store;
+    this.categories = categories;
+    this.amounts = amounts;
+    this.categoryCodes = categoryCodes;
+    this.times = times;
+    this.ids = ids;
+    this.slotCount = slotCount;
+    this.size = size;
+    this.removed = removed;
+    this.version = version;
+    this.layout = layout;
+    this.aggregates = aggregates;
+  }
+
+  /**
+   * @return The version of the model this snapshot was taken at.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @return The sum of all amounts, maintained by the model instead of summed on every call.
+   */
+  public double getTotalAmount() {
+    return aggregates.total();
+  }
+
+  /**
+   * @return The smallest amount, or {@code NaN} if the snapshot is empty.
+   */
+  public double getMinAmount() {
+    return aggregates.min();
+  }
+
+  /**
+   * @return The largest amount, or {@code NaN} if the snapshot is empty.
+   */
+  public double getMaxAmount() {
+    return aggregates.max();
+  }
+
+  /**
+   * @param category The category, ignoring case.
+   * @return The sum of the amounts of that category.
+   */
+  public double getCategoryTotal(String category) {
+    int code = CategoryRegistry.codeOf(category);
+    return code == CategoryRegistry.UNKNOWN ? 0 : aggregates.categoryTotal(code);
+  }
+
+  /**
+   * @param category The category, ignoring case.
+   * @return The number of transactions of that category.
+   */
+  public int getCategoryCount(String category) {
+    return countInCategory(CategoryRegistry.codeOf(category));
+  }
+
+  /**
+   * Reads the amount of a row without materializing its transaction.
+   *
+   * @param index The row to read.
+   * @return The amount stored in that row.
+   */
+  public double getAmount(int index) {
+    return amounts[slot(index)];
+  }
+
+  /**
+   * Reads the category of a row without materializing its transaction.
+   *
+   * @param index The row to read.
+   * @return The category stored in that row.
+   */
+  public String getCategory(int index) {
+    return categories.decode(categoryCodes[slot(index)]);
+  }
+
+  /**
+   * Reads the category of a row as a code, e.g. to compare it without comparing strings.
+   *
+   * @param index The row to read.
+   * @return The {@link CategoryRegistry} code of the category stored in that row.
+   */
+  public int getCategoryCode(int index) {
+    return categories.registryCode(categoryCodes[slot(index)]);
+  }
+
+  /**
+   * Reads the creation time of a row without materializing its transaction.
+   *
+   * @param index The row to read.
+   * @return The epoch milliseconds stored in that row.
+   */
+  public long getTimeMillis(int index) {
+    return times[slot(index)];
+  }
+
+  /**
+   * Reads the id of a row without materializing its transaction.
+   *
+   * @param index The row to read.
+   * @return The id of the transaction in that row, which the model can remove it by.
+   */
+  public long getId(int index) {
+    return ids[slot(index)];
+  }
+
+  /**
+   * Looks up the rows of a category in the model's inverted index, ignoring case.
+   *
+   * @param category The category to look up.
+   * @return The ascending rows of this snapshot holding the category, or {@code null} if the
+   *         index is not available for this snapshot anymore and the caller has to scan.
+   */
+  public int[] rowsInCategory(String category) {
+    return rowsInCategory(CategoryRegistry.codeOf(category));
+  }
+
+  /**
+   * Looks up the rows of a category in the model's inverted index.
+   *
+   * @param category The {@link CategoryRegistry} code of the category to look up.
+   * @return The ascending rows of this snapshot holding the category, or {@code null} if the
+   *         index is not available for this snapshot anymore and the caller has to scan.
+   */
+  public int[] rowsInCategory(int category) {
+    return positions(store.categoryRows(category, slotCount, layout));
+  }
+
+  /**
+   * Looks up the rows whose amount lies in the inclusive range {@code [min, max]}
+   * in the model's sorted amount index.
+   *
+   * @param min The lowest matching amount.
+   * @param max The highest matching amount.
+   * @return The ascending rows of this snapshot in the range, or {@code null} if the
+   *         index is not available for this snapshot anymore and the caller has to scan.
+   */
+  public int[] rowsInAmountRange(double min, double max) {
+    return positions(store.amountRows(min, max, slotCount, layout));
+  }
+
+  /**
+   * Counts the rows of a category, ignoring case, for planning a query.
+   *
+   * @param category The category to look up.
+   * @return The number of rows of this snapshot holding the category.
+   */
+  public int countInCategory(String category) {
+    return getCategoryCount(category);
+  }
+
+  /**
+   * Counts the rows of a category for planning a query.
+   *
+   * @param category The {@link CategoryRegistry} code of the category to look up.
+   * @return The number of rows of this snapshot holding the category.
+   */
+  public int countInCategory(int category) {
+    return category == CategoryRegistry.UNKNOWN ? 0 : aggregates.categoryCount(category);
+  }
+
+  /**
+   * Estimates the number of rows whose amount lies in the inclusive range {@code [min, max]}
+   * from the model's amount index, for planning a query.
+   *
+   * @param min The lowest matching amount.
+   * @param max The highest matching amount.
+   * @return The estimated number of matching rows, at most the size of this snapshot, or -1 if
+   *         the index is not available for this snapshot anymore.
+   */
+  public int estimateInAmountRange(double min, double max) {
+    int estimate = store.amountEstimate(min, max, layout);
+    return Math.min(estimate, size);
+  }
+
+  @Override
+  public Transaction get(int index) {
+    int slot = slot(index);
+    return Transaction.fromStore(amounts[slot], categories.decode(categoryCodes[slot]), times[slot], ids[slot]);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private int slot(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+    return removed == null ? index : slotMap().slot(index);
+  }
+
+  // Maps ascending slots to ascending positions, dropping the removed ones
+  private int[] positions(int[] slots) {
+    if (slots == null || removed == null) {
+      return slots;
+    }
+    SlotMap map = slotMap();
+    int count = 0;
+    for (int slot : slots) {
+      int position = map.position(slot);
+      if (position >= 0) {
+        slots[count++] = position;
+      }
+    }
+    return Arrays.copyOf(slots, count);
+  }
+
+  // Racing readers build equal maps, the final fields make either one safe to publish
+  private SlotMap slotMap() {
+    SlotMap map = slotMap;
+    if (map == null) {
+      map = new SlotMap(removed, slotCount);
+      slotMap = map;
+    }
+    return map;
+  }
+
+}
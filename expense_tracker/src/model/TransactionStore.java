@@ -0,0 +1,666 @@
+package model;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntConsumer;
+
+import model.Persistence.SnapshotFile;
+import model.Persistence.WriteAheadLog;
+
+/**
+ * Columnar storage engine behind the {@link ExpenseTrackerModel}.
+ * <p>
+ * Each field of a transaction is kept in its own primitive column: the amount as a {@code double},
+ * the category as a dictionary-encoded {@code int}, the timestamp as an epoch {@code long} and
+ * the id as a {@code long}. The indexes and aggregates key categories by their {@link CategoryRegistry} code. {@link Transaction} objects are only created on demand when a row is read.
+ * </p>
+ * <p>
+ * Rows are appended to slots and never move until the store is compacted. Removing a row only
+ * marks its slot in a set of tombstones, so a row is found through the {@link IdTable} and
+ * removed by id in O(1), and a removed row can be restored in its slot just as fast.
+ * Once enough slots are removed, a background task compacts the columns.
+ * </p>
+ * <p>
+ * The store also maintains a {@link CategoryIndex} and an {@link AmountIndex} so that
+ * category and amount lookups do not need to scan, and running {@link Aggregates} and
+ * {@link TimeRollups} so that totals do not need to be summed again.
+ * </p>
+ * <p>
+ * The store is thread-safe. Writers are serialized by a {@link StampedLock}, so adds and removes
+ * are linearizable. Readers get the cached snapshot of the current version without locking,
+ * and only the first reader after a change takes the read lock to build it.
+ * </p>
+ * <p>
+ * When a {@link WriteAheadLog} is attached, every change is appended to it under the write lock,
+ * so the order of the log is the order in which the changes were applied.
+ * </p>
+ */
+final class TransactionStore {
+
+  private static final int INITIAL_CAPACITY = 16;
+  // Compaction starts once this many slots, and at least a quarter of all slots, are removed
+  private static final int COMPACTION_THRESHOLD = 1024;
+  private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "transaction-compactor");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final CategoryDictionary categories = new CategoryDictionary();
+  private final CategoryIndex categoryIndex = new CategoryIndex();
+  private final AmountIndex amountIndex = new AmountIndex();
+  private final Aggregates aggregates = new Aggregates();
+  private final TimeRollups rollups = new TimeRollups(ZoneId.systemDefault());
+  private final IdTable ids = new IdTable();
+
+  private double[] amounts = new double[INITIAL_CAPACITY];
+  private int[] categoryCodes = new int[INITIAL_CAPACITY];
+  private long[] times = new long[INITIAL_CAPACITY];
+  private long[] rowIds = new long[INITIAL_CAPACITY];
+  // Number of used slots, and of live rows among them
+  private int slots;
+  private int size;
+  private BitSet removed = new BitSet();
+  private boolean compactionScheduled;
+
+  private final StampedLock lock = new StampedLock();
+  private WriteAheadLog log;
+  // Sequence number of the last record appended to the log
+  private volatile long loggedSequence;
+
+  private long version;
+  // Set while the current tombstones are referenced by a snapshot
+  private volatile boolean shared;
+  private volatile TransactionSnapshot snapshot;
+  // Incremented whenever rows move to other slots, which invalidates the slots seen by older snapshots
+  private long layout;
+
+  /**
+   * @return The number of rows in the store.
+   */
+  int size() {
+    long stamp = lock.tryOptimisticRead();
+    int result = size;
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        result = size;
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Appends a transaction as a new row.
+   *
+   * @param t The transaction to be appended.
+   * @return The change, holding the row of the transaction.
+   */
+  ModelEvent add(Transaction t) {
+    long stamp = lock.writeLock();
+    try {
+      logChange(WriteAheadLog.ADD, t);
+      append(t.getAmount(), t.getCategory(), t.getTimeMillis(), t.getId());
+      changed();
+      return new ModelEvent(ModelEvent.Type.ADDED, size - 1, 1, null, version);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Appends transactions as new rows, growing the columns at most once.
+   *
+   * @param batch The transactions to be appended.
+   * @return The change, holding the row of the first appended transaction, the others follow it.
+   */
+  ModelEvent addAll(List<Transaction> batch) {
+    long stamp = lock.writeLock();
+    try {
+      int first = size;
+      ensureCapacity(slots + batch.size());
+      for (Transaction t : batch) {
+        logChange(WriteAheadLog.ADD, t);
+        append(t.getAmount(), t.getCategory(), t.getTimeMillis(), t.getId());
+      }
+      if (!batch.isEmpty()) {
+        changed();
+      }
+      return new ModelEvent(ModelEvent.Type.ADDED, first, batch.size(), null, version);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Appends the rows of a snapshot file, copying its columns in bulk.
+   * An empty store takes over the arrays of the columns instead of copying them,
+   * so the columns must not be used afterwards.
+   * No {@link Transaction} is created and the values are not validated again.
+   *
+   * @param columns The columns read from the file.
+   */
+  void load(SnapshotFile.Columns columns) {
+    String[] fileCategories = columns.getCategories();
+    int[] codes = new int[fileCategories.length];
+    int[] registryCodes = new int[fileCategories.length];
+    IntConsumer[] postings = new IntConsumer[fileCategories.length];
+    long stamp = lock.writeLock();
+    try {
+      for (int code = 0; code < codes.length; code++) {
+        codes[code] = categories.encode(fileCategories[code]);
+        registryCodes[code] = categories.registryCode(codes[code]);
+        postings[code] = categoryIndex.appender(registryCodes[code]);
+      }
+      int count = columns.size();
+      int[] fileCodes = columns.getCategoryCodes();
+      if (slots == 0 && count > 0) {
+        amounts = columns.getAmounts();
+        times = columns.getTimes();
+        categoryCodes = new int[count];
+        rowIds = new long[count];
+      } else {
+        ensureCapacity(slots + count);
+        System.arraycopy(columns.getAmounts(), 0, amounts, slots, count);
+        System.arraycopy(columns.getTimes(), 0, times, slots, count);
+      }
+      for (int i = 0; i < count; i++) {
+        int slot = slots + i;
+        categoryCodes[slot] = codes[fileCodes[i]];
+        rowIds[slot] = Transaction.nextId();
+        ids.putIfAbsent(rowIds[slot], slot);
+        postings[fileCodes[i]].accept(slot);
+        amountIndex.add(amounts[slot], slot);
+        aggregates.add(registryCodes[fileCodes[i]], amounts[slot]);
+        rollups.add(registryCodes[fileCodes[i]], amounts[slot], times[slot]);
+      }
+      slots += count;
+      size += count;
+      if (count > 0) {
+        changed();
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Removes the row of the given transaction, found by its id. A transaction which is not
+   * stored under its id removes the first row holding the same values instead.
+   *
+   * @param t    The transaction to be removed.
+   * @param rows {@code true} to report the position of the removed row.
+   * @return The change, or {@code null} if no row was removed.
+   */
+  ModelEvent remove(Transaction t, boolean rows) {
+    long stamp = lock.writeLock();
+    try {
+      int slot = ids.get(t.getId());
+      if (slot == -1 || removed.get(slot) || !holds(slot, t)) {
+        slot = indexOf(t);
+      }
+      if (slot == -1) {
+        return null;
+      }
+      removeSlot(slot);
+      changed();
+      return new ModelEvent(ModelEvent.Type.REMOVED, -1, 1, rows ? rowsOf(new int[] {slot}, 1, true) : null,
+          version);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Removes the rows of the given ids as one change.
+   *
+   * @param removedIds The ids of the rows to be removed. Unknown ids are ignored.
+   * @param rows       {@code true} to report the positions of the removed rows.
+   * @return The change, or {@code null} if no row was removed.
+   */
+  ModelEvent removeAll(long[] removedIds, boolean rows) {
+    long stamp = lock.writeLock();
+    try {
+      int[] changedSlots = new int[rows ? removedIds.length : 0];
+      int count = 0;
+      for (long id : removedIds) {
+        int slot = ids.get(id);
+        if (slot != -1 && !removed.get(slot)) {
+          removeSlot(slot);
+          if (rows) {
+            changedSlots[count] = slot;
+          }
+          count++;
+        }
+      }
+      if (count == 0) {
+        return null;
+      }
+      changed();
+      return new ModelEvent(ModelEvent.Type.REMOVED, -1, count, rows ? rowsOf(changedSlots, count, true) : null,
+          version);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Adds back removed transactions as one change. A transaction whose slot has not been
+   * compacted yet is restored in its previous row, others are appended.
+   * Transactions which are still stored are skipped.
+   *
+   * @param batch The removed transactions.
+   * @param rows  {@code true} to report the positions of the restored rows.
+   * @return The change, or {@code null} if no transaction was restored.
+   */
+  ModelEvent restoreAll(List<Transaction> batch, boolean rows) {
+    long stamp = lock.writeLock();
+    try {
+      int[] changedSlots = new int[rows ? batch.size() : 0];
+      int count = 0;
+      for (Transaction t : batch) {
+        int slot = ids.get(t.getId());
+        if (slot != -1 && !removed.get(slot)) {
+          continue;
+        }
+        logChange(WriteAheadLog.ADD, t);
+        if (slot == -1) {
+          append(t.getAmount(), t.getCategory(), t.getTimeMillis(), t.getId());
+          slot = slots - 1;
+        } else {
+          restoreSlot(slot);
+        }
+        if (rows) {
+          changedSlots[count] = slot;
+        }
+        count++;
+      }
+      if (count == 0) {
+        return null;
+      }
+      changed();
+      return new ModelEvent(ModelEvent.Type.RESTORED, -1, count, rows ? rowsOf(changedSlots, count, false) : null,
+          version);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Moves the live rows to the front of new columns and rebuilds the indexes, so removed rows
+   * no longer take up space. The rows and the version stay the same.
+   */
+  void compact() {
+    long stamp = lock.writeLock();
+    try {
+      compactionScheduled = false;
+      if (slots == size) {
+        return;
+      }
+      int capacity = Math.max(INITIAL_CAPACITY, size + (size >> 1));
+      double[] newAmounts = new double[capacity];
+      int[] newCodes = new int[capacity];
+      long[] newTimes = new long[capacity];
+      long[] newIds = new long[capacity];
+      categoryIndex.clear();
+      amountIndex.clear();
+      ids.clear();
+      IntConsumer[] postings = new IntConsumer[categories.size()];
+      int to = 0;
+      for (int from = removed.nextClearBit(0); from < slots; from = removed.nextClearBit(from + 1)) {
+        newAmounts[to] = amounts[from];
+        newCodes[to] = categoryCodes[from];
+        newTimes[to] = times[from];
+        newIds[to] = rowIds[from];
+        int code = newCodes[to];
+        if (postings[code] == null) {
+          postings[code] = categoryIndex.appender(categories.registryCode(code));
+        }
+        postings[code].accept(to);
+        amountIndex.add(newAmounts[to], to);
+        ids.putIfAbsent(newIds[to], to);
+        to++;
+      }
+      // Snapshots keep the old columns, so the new ones are never shared
+      amounts = newAmounts;
+      categoryCodes = newCodes;
+      times = newTimes;
+      rowIds = newIds;
+      slots = size;
+      removed = new BitSet();
+      shared = false;
+      layout++;
+      snapshot = null;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Attaches a log which receives every following change.
+   *
+   * @param log The log, already replayed into this store.
+   */
+  void attach(WriteAheadLog log) {
+    long stamp = lock.writeLock();
+    try {
+      this.log = log;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * @return The sequence number of the last change appended to the attached log.
+   */
+  long loggedSequence() {
+    return loggedSequence;
+  }
+
+  private void logChange(byte type, Transaction t) {
+    if (log != null) {
+      loggedSequence = log.append(type, t.getId(), t.getAmount(), t.getCategory(), t.getTimeMillis());
+    }
+  }
+
+  private void append(double amount, String category, long time, long id) {
+    ensureCapacity(slots + 1);
+    int code = categories.encode(category);
+    int registryCode = categories.registryCode(code);
+    categoryIndex.add(registryCode, slots);
+    amountIndex.add(amount, slots);
+    amounts[slots] = amount;
+    categoryCodes[slots] = code;
+    times[slots] = time;
+    rowIds[slots] = id;
+    // A transaction added twice is found by id at its first live row, and by its values after that
+    int existing = ids.get(id);
+    if (existing == -1 || removed.get(existing)) {
+      ids.put(id, slots);
+    }
+    aggregates.add(registryCode, amount);
+    rollups.add(registryCode, amount, time);
+    slots++;
+    size++;
+  }
+
+  // Ids read back from a log may also have been handed out by this run, so the values must match too
+  private boolean holds(int slot, Transaction t) {
+    return times[slot] == t.getTimeMillis() && Double.compare(amounts[slot], t.getAmount()) == 0
+        && categories.decode(categoryCodes[slot]).equals(t.getCategory());
+  }
+
+  /**
+   * Finds the first live row holding the same values as the given transaction.
+   *
+   * @param t The transaction to look for.
+   * @return The slot of the transaction, or -1 if it is not stored.
+   */
+  private int indexOf(Transaction t) {
+    int code = categories.codeOf(t.getCategory());
+    if (code < 0) {
+      return -1;
+    }
+    double amount = t.getAmount();
+    long time = t.getTimeMillis();
+    for (int slot = removed.nextClearBit(0); slot < slots; slot = removed.nextClearBit(slot + 1)) {
+      if (times[slot] == time && categoryCodes[slot] == code
+          && Double.compare(amounts[slot], amount) == 0) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Marks a slot as removed and updates the aggregates. The columns, indexes and id table keep
+   * the slot until the next compaction. If a snapshot still references the tombstones they are
+   * copied first.
+   *
+   * @param slot The slot to be removed.
+   */
+  private void removeSlot(int slot) {
+    int code = categoryCodes[slot];
+    if (log != null) {
+      loggedSequence = log.append(WriteAheadLog.REMOVE, rowIds[slot], amounts[slot], categories.decode(code),
+          times[slot]);
+    }
+    if (shared) {
+      removed = (BitSet) removed.clone();
+      shared = false;
+    }
+    removed.set(slot);
+    size--;
+    int registryCode = categories.registryCode(code);
+    aggregates.remove(registryCode, amounts[slot]);
+    rollups.remove(registryCode, amounts[slot], times[slot]);
+
+    int garbage = slots - size;
+    if (!compactionScheduled && garbage >= COMPACTION_THRESHOLD && garbage >= slots >> 2) {
+      compactionScheduled = true;
+      COMPACTOR.execute(this::compact);
+    }
+  }
+
+  /**
+   * Clears the tombstone of a removed slot and updates the aggregates.
+   *
+   * @param slot The slot to be restored.
+   */
+  private void restoreSlot(int slot) {
+    if (shared) {
+      removed = (BitSet) removed.clone();
+      shared = false;
+    }
+    removed.clear(slot);
+    size++;
+    int registryCode = categories.registryCode(categoryCodes[slot]);
+    aggregates.add(registryCode, amounts[slot]);
+    rollups.add(registryCode, amounts[slot], times[slot]);
+  }
+
+  /**
+   * @return The version of the store, incremented by every change.
+   */
+  long version() {
+    long stamp = lock.tryOptimisticRead();
+    long result = version;
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        result = version;
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Estimates the heap used by the store from the capacity of its columns and indexes.
+   * Snapshots may keep older, smaller columns alive, which are not counted.
+   *
+   * @return The estimated number of bytes.
+   */
+  long footprint() {
+    long stamp = lock.readLock();
+    try {
+      // amounts, category codes, times and ids
+      long columns = (8L + 4L + 8L + 8L) * amounts.length;
+      return columns + removed.size() / 8 + ids.footprint() + amountIndex.footprint() + categoryIndex.footprint();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Returns an immutable view of the current rows in O(1).
+   * Repeated calls without an intermediate change return the same snapshot.
+   *
+   * @return The snapshot of the current version.
+   */
+  TransactionSnapshot snapshot() {
+    TransactionSnapshot current = snapshot;
+    if (current != null) {
+      return current;
+    }
+    long stamp = lock.readLock();
+    try {
+      current = snapshot;
+      if (current == null) {
+        // Racing readers build equal snapshots of the same version, either one may be cached
+        BitSet tombstones = null;
+        if (slots != size) {
+          shared = true;
+          tombstones = removed;
+        }
+        current = new TransactionSnapshot(this, categories, amounts, categoryCodes, times, rowIds,
+            slots, size, tombstones, version, layout, aggregates.copy());
+        snapshot = current;
+      }
+      return current;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Looks up the slots of a category as seen by a snapshot.
+   *
+   * @param category  The {@link CategoryRegistry} code of the category to look up.
+   * @param slotCount The number of slots in the snapshot.
+   * @param layout    The layout stamp recorded when the snapshot was taken.
+   * @return The ascending slots holding the category, including removed ones, or {@code null}
+   *         if the rows have moved since the snapshot was taken and the index can no longer answer for it.
+   */
+  int[] categoryRows(int category, int slotCount, long layout) {
+    long stamp = lock.readLock();
+    try {
+      return layout == this.layout ? categoryIndex.rows(category, slotCount) : null;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Looks up the slots whose amount lies in {@code [min, max]} as seen by a snapshot.
+   *
+   * @param min       The lowest matching amount.
+   * @param max       The highest matching amount.
+   * @param slotCount The number of slots in the snapshot.
+   * @param layout    The layout stamp recorded when the snapshot was taken.
+   * @return The matching slots in ascending order, including removed ones, or {@code null} if
+   *         the rows have moved since the snapshot was taken and the index can no longer answer for it.
+   */
+  int[] amountRows(double min, double max, int slotCount, long layout) {
+    long stamp = lock.readLock();
+    try {
+      if (layout != this.layout) {
+        return null;
+      }
+      if (amountIndex.needsMerge()) {
+        // Merging the appended rows modifies the index, which needs the write lock
+        long writeStamp = lock.tryConvertToWriteLock(stamp);
+        if (writeStamp == 0L) {
+          lock.unlockRead(stamp);
+          writeStamp = lock.writeLock();
+        }
+        stamp = writeStamp;
+        if (layout != this.layout) {
+          return null;
+        }
+        amountIndex.merge();
+      }
+      return amountIndex.rows(min, max, slotCount);
+    } finally {
+      lock.unlock(stamp);
+    }
+  }
+
+  /**
+   * Estimates the number of rows whose amount lies in {@code [min, max]} as seen by a snapshot.
+   *
+   * @param min    The lowest matching amount.
+   * @param max    The highest matching amount.
+   * @param layout The layout stamp recorded when the snapshot was taken.
+   * @return The estimate, which may include rows added or removed after the snapshot, or -1 if
+   *         the rows have moved since the snapshot was taken.
+   */
+  int amountEstimate(double min, double max, long layout) {
+    long stamp = lock.readLock();
+    try {
+      return layout == this.layout ? amountIndex.estimate(min, max) : -1;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Reads the spend per time bucket of the current version.
+   *
+   * @param granularity The length of the buckets.
+   * @param category    The {@link CategoryRegistry} code of the category to include, or
+   *                    {@link CategoryRegistry#UNKNOWN} for all of them.
+   * @param from        The earliest bucket start, in epoch milliseconds.
+   * @param to          The bucket start to stop before, in epoch milliseconds.
+   * @return The non-empty buckets in ascending order.
+   */
+  List<TimeBucket> rollup(Granularity granularity, int category, long from, long to) {
+    long stamp = lock.readLock();
+    try {
+      return rollups.buckets(granularity, category, from, to);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Finds the rows of changed slots by counting the removed slots before each.
+   *
+   * @param changedSlots The changed slots, sorted in place.
+   * @param count        The number of changed slots.
+   * @param removing     {@code true} if the slots were just removed, their rows are then the ones
+   *                     before the change.
+   * @return The rows of the slots, ascending.
+   */
+  private int[] rowsOf(int[] changedSlots, int count, boolean removing) {
+    Arrays.sort(changedSlots, 0, count);
+    int[] rows = new int[count];
+    int tombstones = 0;
+    int from = 0;
+    for (int i = 0; i < count; i++) {
+      int slot = changedSlots[i];
+      for (int t = removed.nextSetBit(from); t >= 0 && t < slot; t = removed.nextSetBit(t + 1)) {
+        tombstones++;
+      }
+      from = slot;
+      // The slots removed before this one by the same change were still rows
+      rows[i] = slot - tombstones + (removing ? i : 0);
+    }
+    return rows;
+  }
+
+  private void changed() {
+    version++;
+    snapshot = null;
+  }
+
+  // Columns are only ever appended to, so snapshots sharing the old arrays are not affected
+  private void ensureCapacity(int capacity) {
+    if (capacity > amounts.length) {
+      int newCapacity = Math.max(capacity, amounts.length + (amounts.length >> 1));
+      amounts = Arrays.copyOf(amounts, newCapacity);
+      categoryCodes = Arrays.copyOf(categoryCodes, newCapacity);
+      times = Arrays.copyOf(times, newCapacity);
+      rowIds = Arrays.copyOf(rowIds, newCapacity);
+    }
+  }
+
+}
@@ -0,0 +1,88 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import metrics.Metrics;
+
+import model.ExpenseTrackerModel;
+import model.ModelEvent;
+import model.ModelListener;
+
+/**
+ * Follows the changes of a model in a {@link TransactionTableModel}, at most once per frame.
+ * <p>
+ * The model may change on any thread and many times per frame, e.g. during an import. Each change
+ * only marks the table as stale and, if it was up to date, starts a timer on the event dispatch
+ * thread. When the timer fires the table shows the latest snapshot in a single update, so the
+ * event dispatch thread does one update per frame however fast the model changes. A change made
+ * on the event dispatch thread while no update is pending, e.g. by a click, is shown at once.
+ * </p>
+ */
+public class CoalescingTableUpdater implements ModelListener {
+
+  /**
+   * Delay between a change and the update of the table, about one frame at 60 Hz.
+   */
+  public static final int FRAME_MILLIS = 16;
+
+  private final ExpenseTrackerModel model;
+  private final TransactionTableModel table;
+  private final Timer timer;
+  // Set while an update is pending, so that only the first change of a frame starts the timer
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  // The changes since the last update, so that only the changed rows are reported to the table
+  private final Queue<ModelEvent> changes = new ConcurrentLinkedQueue<>();
+
+  /**
+   * @param model The model to follow.
+   * @param table The table model showing it.
+   */
+  public CoalescingTableUpdater(ExpenseTrackerModel model, TransactionTableModel table) {
+    this.model = model;
+    this.table = table;
+    this.timer = new Timer(FRAME_MILLIS, e -> flush());
+    this.timer.setRepeats(false);
+  }
+
+  @Override
+  public void modelChanged(ModelEvent event) {
+    changes.add(event);
+    if (SwingUtilities.isEventDispatchThread() && !scheduled.get()) {
+      update();
+    } else if (scheduled.compareAndSet(false, true)) {
+      SwingUtilities.invokeLater(timer::restart);
+    }
+  }
+
+  /**
+   * Applies the pending update now, if there is one. Must be called on the event dispatch thread.
+   */
+  public void flush() {
+    if (scheduled.getAndSet(false)) {
+      update();
+    }
+  }
+
+  // Runs on the event dispatch thread. The changes are taken before the snapshot is read, so a
+  // change made meanwhile is either in this snapshot or schedules the next update. A change in
+  // the snapshot whose event comes later makes the table show all rows, and is then ignored.
+  private void update() {
+    long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+    List<ModelEvent> taken = new ArrayList<>();
+    for (ModelEvent change = changes.poll(); change != null; change = changes.poll()) {
+      taken.add(change);
+    }
+    table.update(model.getSnapshot(), taken);
+    if (Metrics.ENABLED) {
+      Metrics.REFRESH_TABLE.recordSince(start);
+    }
+  }
+
+}
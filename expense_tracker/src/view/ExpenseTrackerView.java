@@ -1,13 +1,14 @@
 package view;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.text.NumberFormat;
+import java.util.BitSet;
 
+import metrics.Metrics;
+import model.ExpenseTrackerModel;
 import model.Transaction;
 
 import java.util.List;
@@ -20,7 +21,9 @@ public class ExpenseTrackerView extends JFrame {
   private JButton addTransactionBtn;
   private JFormattedTextField amountField;
   private JTextField categoryField;
-  private DefaultTableModel model;
+  private TransactionTableModel model;
+  private HighlightRenderer highlightRenderer;
+  private CoalescingTableUpdater updater;
 
   // private JTextField dateFilterField;
   private JTextField categoryFilterField;
@@ -29,6 +32,8 @@ public class ExpenseTrackerView extends JFrame {
   private JTextField amountFilterField;
   private JButton amountFilterBtn;
   private JButton undoBtn;
+  private JButton undoLastBtn;
+  private JButton redoBtn;
 
   
   /**
@@ -38,12 +43,14 @@ public class ExpenseTrackerView extends JFrame {
     setTitle("Expense Tracker"); // Set title
     setSize(600, 400); // Make GUI larger
 
-    String[] columnNames = {"serial", "Amount", "Category", "Date"};
-    this.model = new DefaultTableModel(columnNames, 0);
+    this.model = new TransactionTableModel();
 
     
     // Create table
     transactionsTable = new JTable(model);
+    // The renderer is installed once, highlightRows only changes the rows it paints
+    highlightRenderer = new HighlightRenderer();
+    transactionsTable.setDefaultRenderer(Object.class, highlightRenderer);
 
     addTransactionBtn = new JButton("Add Transaction");
 
@@ -69,6 +76,8 @@ public class ExpenseTrackerView extends JFrame {
   
 
     undoBtn = new JButton("Undo");
+    undoLastBtn = new JButton("Undo Last");
+    redoBtn = new JButton("Redo");
   
     // Layout components
     JPanel inputPanel = new JPanel();
@@ -83,6 +92,8 @@ public class ExpenseTrackerView extends JFrame {
     buttonPanel.add(categoryFilterBtn);
 
     buttonPanel.add(undoBtn);
+    buttonPanel.add(undoLastBtn);
+    buttonPanel.add(redoBtn);
   
     // Add panels to frame
     add(inputPanel, BorderLayout.NORTH);
@@ -97,9 +108,9 @@ public class ExpenseTrackerView extends JFrame {
   
   }
   /**
-   * @return The basic table model for transactions.
+   * @return The table model for transactions.
    */
-  public DefaultTableModel getTableModel() {
+  public TransactionTableModel getTableModel() {
     return model;
   }
   /**
@@ -171,6 +182,18 @@ public class ExpenseTrackerView extends JFrame {
   public void addUndoListener(ActionListener listener) {
     undoBtn.addActionListener(listener);
   }
+/**
+ * @param listener the ActionListener to be added to the undo last change button
+ */
+  public void addUndoLastListener(ActionListener listener) {
+    undoLastBtn.addActionListener(listener);
+  }
+/**
+ * @param listener the ActionListener to be added to the redo button
+ */
+  public void addRedoListener(ActionListener listener) {
+    redoBtn.addActionListener(listener);
+  }
 /**
  * @return the Amount filter string input by the user
  */
@@ -193,31 +216,59 @@ public class ExpenseTrackerView extends JFrame {
     return undoBtn;
   }
 
+  /**
+   * @return undo last change button.
+   */
+  public JButton getUndoLastBtn() {
+    return undoLastBtn;
+  }
+
+  /**
+   * @return redo button.
+   */
+  public JButton getRedoBtn() {
+    return redoBtn;
+  }
+
+  /**
+   * Shows the transactions of a model, and then its changes as they happen, whichever thread
+   * makes them. Bursts of changes are applied as one update per frame.
+   *
+   * @param expenses The model to follow.
+   */
+  public void follow(ExpenseTrackerModel expenses) {
+    updater = new CoalescingTableUpdater(expenses, model);
+    expenses.addModelListener(updater);
+    // e.g. the transactions restored from disk, the table only reads the rows on screen
+    if (!expenses.getTransactions().isEmpty()) {
+      refreshTable(expenses.getTransactions());
+    }
+  }
+
+  /**
+   * Shows the pending changes of the followed model now instead of at the next frame.
+   * Must be called on the event dispatch thread.
+   */
+  public void flushTableUpdates() {
+    if (updater != null) {
+      updater.flush();
+    }
+  }
+
+  /**
+   * Shows a new list of transactions in the table.
+   *
+   * @param transactions The transactions to show.
+   */
   public void refreshTable(List<Transaction> transactions) {
-      // Clear existing rows
-      model.setRowCount(0);
-      // Get row count
-      int rowNum = model.getRowCount();
-      double totalCost=0;
-      // Calculate total cost
-      for(Transaction t : transactions) {
-        totalCost+=t.getAmount();
-      }
-  
-      // Add rows from transactions list
-      for(Transaction t : transactions) {
-        model.addRow(new Object[]{rowNum+=1,t.getAmount(), t.getCategory(), t.getTimestamp()}); 
+      long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+      // The table model reads the cells from the list, nothing is copied
+      model.setTransactions(transactions);
+      if (Metrics.ENABLED) {
+        Metrics.REFRESH_TABLE.recordSince(start);
       }
-      // Add total row
-      Object[] totalRow = {"Total", null, null, totalCost};
-      model.addRow(totalRow);
-  
-      // Fire table update
-      transactionsTable.updateUI();
-  
-    }  
-  
-  
+  }
+
   /**
    * @return Add transactions button.
    */
@@ -231,23 +282,20 @@ public class ExpenseTrackerView extends JFrame {
    * @param rowIndexes are all the rows we need to highlight
    */
   public void highlightRows(List<Integer> rowIndexes) {
+      BitSet rows = new BitSet();
+      for (int row : rowIndexes) {
+          rows.set(row);
+      }
+      highlightRows(rows);
+  }
+
+  /**
+   * @param rows is the set of rows we need to highlight
+   */
+  public void highlightRows(BitSet rows) {
       // The row indices are being used as hashcodes for the transactions.
       // The row index directly maps to the the transaction index in the list.
-      transactionsTable.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
-          @Override
-          public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
-                                                        boolean hasFocus, int row, int column) {
-              Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-              if (rowIndexes.contains(row)) {
-                  c.setBackground(new Color(173, 255, 168)); // Light green
-              } else {
-                  c.setBackground(table.getBackground());
-              }
-              return c;
-          }
-      });
-
-      transactionsTable.repaint();
+      highlightRenderer.setHighlightedRows(transactionsTable, rows);
   }
 
 
@@ -0,0 +1,71 @@
+package view;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.BitSet;
+
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableCellRenderer;
+
+/**
+ * Cell renderer which paints the highlighted rows of the transactions table in light green.
+ * <p>
+ * It is installed once, and the highlighted rows are kept in a {@link BitSet} so that painting
+ * a cell is an O(1) lookup. Changing the highlight repaints only the visible rows that changed.
+ * </p>
+ */
+public class HighlightRenderer extends DefaultTableCellRenderer {
+
+  public static final Color HIGHLIGHT_COLOR = new Color(173, 255, 168); // Light green
+
+  private BitSet highlightedRows = new BitSet();
+
+  /**
+   * Highlights the given rows, and only those, in the table.
+   *
+   * @param table The table this renderer is installed on.
+   * @param rows  The rows to highlight. The renderer keeps its own copy.
+   */
+  public void setHighlightedRows(JTable table, BitSet rows) {
+    BitSet changed = (BitSet) rows.clone();
+    changed.xor(highlightedRows);
+    highlightedRows = (BitSet) rows.clone();
+
+    Rectangle visible = table.getVisibleRect();
+    int first = table.rowAtPoint(visible.getLocation());
+    if (first < 0) {
+      first = 0;
+    }
+    int last = table.rowAtPoint(new Point(visible.x, visible.y + visible.height - 1));
+    if (last < 0) {
+      last = table.getRowCount() - 1;
+    }
+    for (int row = changed.nextSetBit(first); row >= 0 && row <= last; row = changed.nextSetBit(row + 1)) {
+      Rectangle cell = table.getCellRect(row, 0, true);
+      table.repaint(0, cell.y, table.getWidth(), cell.height);
+    }
+  }
+
+  /**
+   * @param row a row of the table
+   * @return {@code true} if the row is highlighted
+   */
+  public boolean isHighlighted(int row) {
+    return highlightedRows.get(row);
+  }
+
+  @Override
+  public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                 boolean hasFocus, int row, int column) {
+    Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+    if (highlightedRows.get(row)) {
+      c.setBackground(HIGHLIGHT_COLOR);
+    } else {
+      c.setBackground(table.getBackground());
+    }
+    return c;
+  }
+
+}
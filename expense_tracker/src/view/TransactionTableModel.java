@@ -0,0 +1,249 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+import model.ModelEvent;
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * Table model which reads its cells directly from the model's transactions instead of copying them into rows.
+ * <p>
+ * The transactions are followed by a "Total" row, read from the model's running total when the
+ * transactions are a {@link TransactionSnapshot} and summed otherwise. Changes are
+ * reported as row insertions or deletions, so adding one transaction only repaints the new row
+ * and the total, no matter how many transactions there are.
+ * </p>
+ */
+public class TransactionTableModel extends AbstractTableModel {
+
+  private static final String[] COLUMN_NAMES = {"serial", "Amount", "Category", "Date"};
+
+  // null until the table is first filled, the total row is only shown from then on
+  private List<Transaction> transactions;
+  private double totalCost;
+  private boolean totalValid;
+
+  /**
+   * Replaces all transactions shown in the table.
+   *
+   * @param transactions The transactions to show.
+   */
+  public void setTransactions(List<Transaction> transactions) {
+    this.transactions = transactions;
+    this.totalValid = false;
+    fireTableDataChanged();
+  }
+
+  /**
+   * Shows transactions in which the rows {@code first} to {@code last} were inserted.
+   *
+   * @param transactions The transactions after the insertion.
+   * @param first        The first inserted row.
+   * @param last         The last inserted row.
+   */
+  public void rowsInserted(List<Transaction> transactions, int first, int last) {
+    if (this.transactions == null) {
+      setTransactions(transactions);
+      return;
+    }
+    this.transactions = transactions;
+    if (totalValid) {
+      for (int row = first; row <= last; row++) {
+        totalCost += amountAt(row);
+      }
+    }
+    fireTableRowsInserted(first, last);
+    fireTableRowsUpdated(transactions.size(), transactions.size());
+  }
+
+  /**
+   * Shows transactions from which the rows {@code first} to {@code last} were deleted.
+   *
+   * @param transactions The transactions after the deletion.
+   * @param first        The first deleted row.
+   * @param last         The last deleted row.
+   */
+  public void rowsDeleted(List<Transaction> transactions, int first, int last) {
+    if (this.transactions == null) {
+      setTransactions(transactions);
+      return;
+    }
+    this.transactions = transactions;
+    this.totalValid = false;
+    fireTableRowsDeleted(first, last);
+    fireTableRowsUpdated(transactions.size(), transactions.size());
+  }
+
+  /**
+   * Shows a newer snapshot of the model in one update. If the changes since the rows shown are all
+   * given, only the appended, removed and restored rows are reported to the table, otherwise all
+   * of them are. A snapshot which is not newer than the one shown changes nothing.
+   *
+   * @param snapshot The snapshot to show.
+   * @param changes  The changes made since the last update, in any order. Changes already shown are ignored.
+   * @return {@code true} if the table changed.
+   */
+  public boolean update(TransactionSnapshot snapshot, List<ModelEvent> changes) {
+    if (!(transactions instanceof TransactionSnapshot)) {
+      setTransactions(snapshot);
+      return true;
+    }
+    long shown = ((TransactionSnapshot) transactions).getVersion();
+    if (shown >= snapshot.getVersion()) {
+      return false;
+    }
+    List<ModelEvent> missed = changesBetween(shown, snapshot.getVersion(), changes);
+    List<int[]> rowsOfChanges = new ArrayList<>();
+    for (int i = 0; missed != null && i < missed.size(); i++) {
+      int[] rows = missed.get(i).getRows();
+      if (rows == null && missed.get(i).getType() != ModelEvent.Type.ADDED) {
+        missed = null;
+      }
+      rowsOfChanges.add(rows);
+    }
+    if (missed == null) {
+      setTransactions(snapshot);
+      return true;
+    }
+    // The rows of each change refer to the rows right before or after it, so they are reported in
+    // order. Consecutive appends are reported as one insertion.
+    int appendedFrom = -1;
+    int appendedTo = -1;
+    for (int i = 0; i < missed.size(); i++) {
+      ModelEvent change = missed.get(i);
+      int[] rows = rowsOfChanges.get(i);
+      if (appendedFrom >= 0 && change.getType() == ModelEvent.Type.ADDED && change.getFirstRow() == appendedTo + 1) {
+        appendedTo += change.getCount();
+        continue;
+      }
+      if (appendedFrom >= 0) {
+        rowsInserted(snapshot, appendedFrom, appendedTo);
+        appendedFrom = -1;
+        appendedTo = -1;
+      }
+      switch (change.getType()) {
+        case ADDED:
+          appendedFrom = change.getFirstRow();
+          appendedTo = appendedFrom + change.getCount() - 1;
+          break;
+        case REMOVED:
+          // From the last row, so that the rows still to delete keep their position
+          for (int end = rows.length - 1; end >= 0;) {
+            int start = end;
+            while (start > 0 && rows[start - 1] == rows[start] - 1) {
+              start--;
+            }
+            rowsDeleted(snapshot, rows[start], rows[end]);
+            end = start - 1;
+          }
+          break;
+        default:
+          for (int start = 0; start < rows.length;) {
+            int end = start;
+            while (end + 1 < rows.length && rows[end + 1] == rows[end] + 1) {
+              end++;
+            }
+            rowsInserted(snapshot, rows[start], rows[end]);
+            start = end + 1;
+          }
+      }
+    }
+    if (appendedFrom >= 0) {
+      rowsInserted(snapshot, appendedFrom, appendedTo);
+    }
+    return true;
+  }
+
+  // The changes leading from one version to another in order, or null if any of them is missing
+  private static List<ModelEvent> changesBetween(long from, long to, List<ModelEvent> changes) {
+    List<ModelEvent> between = new ArrayList<>();
+    for (ModelEvent change : changes) {
+      if (change.getVersion() > from && change.getVersion() <= to) {
+        between.add(change);
+      }
+    }
+    if (between.size() != to - from) {
+      return null;
+    }
+    between.sort(Comparator.comparingLong(ModelEvent::getVersion));
+    for (int i = 0; i < between.size(); i++) {
+      if (between.get(i).getVersion() != from + 1 + i) {
+        return null;
+      }
+    }
+    return between;
+  }
+
+  /**
+   * @return The version of the model snapshot shown, or -1 if the table does not show a snapshot.
+   */
+  public long getVersion() {
+    return transactions instanceof TransactionSnapshot ? ((TransactionSnapshot) transactions).getVersion() : -1;
+  }
+
+  /**
+   * @return The sum of the amounts of all transactions shown.
+   */
+  public double getTotalCost() {
+    if (transactions instanceof TransactionSnapshot) {
+      // Maintained by the model, nothing to sum
+      return ((TransactionSnapshot) transactions).getTotalAmount();
+    }
+    if (!totalValid) {
+      totalCost = 0;
+      if (transactions != null) {
+        for (int row = 0; row < transactions.size(); row++) {
+          totalCost += amountAt(row);
+        }
+      }
+      totalValid = true;
+    }
+    return totalCost;
+  }
+
+  @Override
+  public int getRowCount() {
+    return transactions == null ? 0 : transactions.size() + 1;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMN_NAMES.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMN_NAMES[column];
+  }
+
+  @Override
+  public Object getValueAt(int row, int column) {
+    if (row == transactions.size()) {
+      // Total row
+      return column == 0 ? "Total" : column == 3 ? getTotalCost() : null;
+    }
+    switch (column) {
+      case 0:
+        return row + 1;
+      case 1:
+        return amountAt(row);
+      case 2:
+        return transactions.get(row).getCategory();
+      default:
+        return transactions.get(row).getTimestamp();
+    }
+  }
+
+  private double amountAt(int row) {
+    if (transactions instanceof TransactionSnapshot) {
+      return ((TransactionSnapshot) transactions).getAmount(row);
+    }
+    return transactions.get(row).getAmount();
+  }
+
+}
@@ -0,0 +1,107 @@
+// package test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionSnapshot;
+import model.Filter.CategoryFilter;
+
+/**
+ * Stress tests for using the model from several importer threads at once.
+ */
+public class TestConcurrentModel {
+
+    private static final String[] CATEGORIES = {"food", "travel", "bills", "entertainment", "other"};
+    private static final int OPERATIONS_PER_THREAD = 20000;
+
+    @Test
+    public void testConcurrentAddAndRemoveAreLinearizable() throws Exception {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        runWorkers(model, threads, 1.0);
+
+        // Every writer added three rows for each one it removed again
+        assertEquals(threads * OPERATIONS_PER_THREAD / 2, model.getTransactions().size());
+        TransactionSnapshot snapshot = model.getSnapshot();
+        int indexed = 0;
+        for (String category : CATEGORIES) {
+            indexed += new CategoryFilter(category).filterRows(snapshot).cardinality();
+        }
+        assertEquals(snapshot.size(), indexed);
+    }
+
+    @Test
+    public void testReadHeavyMixKeepsSnapshotsConsistent() throws Exception {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        runWorkers(model, threads, 0.1);
+
+        // Every writer made the same sequence of adds and removes
+        int rowsPerWriter = 0;
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            if ((i * 7919L % 1000) < 100) {
+                rowsPerWriter += i % 4 != 3 || rowsPerWriter == 0 ? 1 : -1;
+            }
+        }
+        assertEquals(threads * rowsPerWriter, model.getTransactions().size());
+        assertEquals(model.getTransactions().size(), model.getSnapshot().size());
+    }
+
+    /**
+     * Starts the workers together and waits for all of them. A worker performs a write with the
+     * given probability and otherwise reads a snapshot, checking that it is internally consistent.
+     */
+    private void runWorkers(ExpenseTrackerModel model, int threads, double writeRatio) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            results.add(pool.submit(() -> {
+                start.await();
+                List<Transaction> added = new ArrayList<>();
+                long lastVersion = -1;
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    if ((i * 7919L % 1000) < writeRatio * 1000) {
+                        if (i % 4 != 3 || added.isEmpty()) {
+                            Transaction transaction = new Transaction(1 + (worker * 31 + i) % 999, CATEGORIES[i % CATEGORIES.length]);
+                            model.addTransaction(transaction);
+                            added.add(transaction);
+                        } else {
+                            model.removeTransaction(added.remove(added.size() - 1));
+                        }
+                    } else {
+                        TransactionSnapshot snapshot = model.getSnapshot();
+                        // Versions only move forward, and a snapshot never changes once taken
+                        assertTrue(snapshot.getVersion() >= lastVersion);
+                        int size = snapshot.size();
+                        if (size > 0) {
+                            assertTrue(snapshot.getAmount(size - 1) > 0);
+                            snapshot.get(size - 1);
+                        }
+                        assertEquals(size, snapshot.size());
+                        lastVersion = snapshot.getVersion();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
@@ -3,13 +3,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
-import java.text.ParseException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.List;
 
 import javax.swing.JTable;
+import javax.swing.SwingUtilities;
 import java.awt.*;
-import javax.swing.table.DefaultTableModel;
 
 import org.junit.After;
 import org.junit.Before;
@@ -21,6 +22,7 @@ import model.Transaction;
 import model.Filter.AmountFilter;
 import model.Filter.CategoryFilter;
 import view.ExpenseTrackerView;
+import view.TransactionTableModel;
 
 
 public class TestExample {
@@ -56,15 +58,20 @@ public class TestExample {
     }
 
 
+    // The table follows the model on the event dispatch thread, show its pending update now
+    private void showPendingChanges() throws Exception {
+        SwingUtilities.invokeAndWait(view::flushTableUpdates);
+    }
+
     public void checkTransaction(double amount, String category, Transaction transaction) {
 	    assertEquals(amount, transaction.getAmount(), 0.01);
         assertEquals(category, transaction.getCategory());
         String transactionDateString = transaction.getTimestamp();
         Date transactionDate = null;
         try {
-            transactionDate = Transaction.dateFormatter.parse(transactionDateString);
+            transactionDate = Date.from(ZonedDateTime.parse(transactionDateString, Transaction.TIMESTAMP_FORMATTER).toInstant());
         }
-        catch (ParseException pe) {
+        catch (DateTimeParseException pe) {
             pe.printStackTrace();
             transactionDate = null;
         }
@@ -150,9 +157,9 @@ public class TestExample {
      * Test case 1
      */
     @Test
-    public void testViewUpdateAddTransaction() {
+    public void testViewUpdateAddTransaction() throws Exception {
         // Pre-condition: The view's table model is empty
-        DefaultTableModel tableModel = view.getTableModel();
+        TransactionTableModel tableModel = view.getTableModel();
         assertEquals(0, tableModel.getRowCount());
 
         // Perform action: Adding a transaction
@@ -160,6 +167,7 @@ public class TestExample {
         String category = "food";
         controller.addTransaction(amount, category);
 
+        showPendingChanges();
         // Post-conditions: Check the view's table model has one row added: 2 exist because 1 is total row
         assertEquals(1+1, tableModel.getRowCount());
 
@@ -184,7 +192,7 @@ public class TestExample {
     public void testInvalidInput() {
         // Pre Condition: Check the transactions are empty, and initial total cost
         double initialTotalCost = getTotalCost();
-        DefaultTableModel tableModel = view.getTableModel();
+        TransactionTableModel tableModel = view.getTableModel();
         assertEquals(0, tableModel.getRowCount());
 
         // Perform Action: ExpenseTrackerModel class addTransaction method to cover it's exceptional situation
@@ -239,9 +247,9 @@ public class TestExample {
      * Test case 3
      */
     @Test
-    public void testFilterAmountHighlight() {
+    public void testFilterAmountHighlight() throws Exception {
         // Pre-condition: Check the transactions are empty
-        DefaultTableModel tableModel = view.getTableModel();
+        TransactionTableModel tableModel = view.getTableModel();
         assertEquals(0, tableModel.getRowCount());
         assertEquals(0, model.getTransactions().size());
 
@@ -250,6 +258,7 @@ public class TestExample {
         controller.addTransaction(50.0, "travel");
         controller.addTransaction(100.0, "food");
         controller.addTransaction(50.0, "bills");
+        showPendingChanges();
 
         // Retrieve the table from the view
         JTable transactionsTable = view.getTransactionsTable();
@@ -289,9 +298,9 @@ public class TestExample {
      * Test case 4
      */
     @Test
-    public void testFilterCategoryHighlight() {
+    public void testFilterCategoryHighlight() throws Exception {
         // Pre-condition: Check the transactions are empty
-        DefaultTableModel tableModel = view.getTableModel();
+        TransactionTableModel tableModel = view.getTableModel();
         assertEquals(0, tableModel.getRowCount());
         assertEquals(0, model.getTransactions().size());
 
@@ -300,6 +309,7 @@ public class TestExample {
         controller.addTransaction(50.0, "travel");
         controller.addTransaction(100.0, "food");
         controller.addTransaction(50.0, "bills");
+        showPendingChanges();
 
         // Retrieve the table from the view
         JTable transactionsTable = view.getTransactionsTable();
@@ -341,7 +351,7 @@ public class TestExample {
     public void undoDisallowed() {
         // Pre-condition: List of transactions is empty
         assertEquals(0, model.getTransactions().size());
-        DefaultTableModel tableModel = view.getTableModel();
+        TransactionTableModel tableModel = view.getTableModel();
         assertEquals(0, tableModel.getRowCount());
         // Perform the action: try undo
         try {
@@ -360,10 +370,10 @@ public class TestExample {
      * Test case 6
      */
     @Test
-    public void undoAllowed() {
+    public void undoAllowed() throws Exception {
         // Pre-condition: List of transactions is empty in model
         assertEquals(0, model.getTransactions().size());
-        DefaultTableModel tableModel = view.getTableModel();
+        TransactionTableModel tableModel = view.getTableModel();
         // Checking view before undo button is clicked
         assertEquals(0, tableModel.getRowCount());
 
@@ -382,8 +392,35 @@ public class TestExample {
         //total cost in model after undo
         assertEquals(50.0, getTotalCost(), 0.01);
         // Checking if view is updated
+        showPendingChanges();
         assertEquals(2, tableModel.getRowCount());
     }
 
+    @Test
+    public void testUndoAndRedoChanges() throws Exception {
+        TransactionTableModel tableModel = view.getTableModel();
+        controller.addTransaction(50.0, "food");
+        controller.addTransaction(20.0, "travel");
+        controller.removeTransaction(new int[] {0});
+        assertEquals(1, model.getTransactions().size());
+
+        // Undo the remove, then the last add, regardless of the selected rows
+        assertTrue(controller.undo());
+        assertEquals(2, model.getTransactions().size());
+        assertEquals(50.0, model.getTransactions().get(0).getAmount(), 0.01);
+        assertTrue(controller.undo());
+        assertEquals(1, model.getTransactions().size());
+        assertEquals(50.0, getTotalCost(), 0.01);
+        showPendingChanges();
+        assertEquals(2, tableModel.getRowCount());
+
+        assertTrue(controller.redo());
+        assertEquals(70.0, getTotalCost(), 0.01);
+        // A new change discards what could be redone
+        controller.addTransaction(5.0, "bills");
+        assertTrue(!controller.canRedo());
+        assertTrue(!controller.redo());
+        assertEquals(75.0, getTotalCost(), 0.01);
+    }
 
 }
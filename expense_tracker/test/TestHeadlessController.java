@@ -0,0 +1,84 @@
+// package test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import controller.ExpenseTrackerController;
+import model.ExpenseTrackerModel;
+import model.Filter.AmountFilter;
+import model.Filter.CategoryFilter;
+
+public class TestHeadlessController {
+
+    private ExpenseTrackerModel model;
+    private List<String> errors;
+    private ExpenseTrackerController controller;
+
+    @Before
+    public void setup() {
+        model = new ExpenseTrackerModel();
+        errors = new ArrayList<>();
+        // No view, errors are collected instead of shown in a dialog
+        controller = new ExpenseTrackerController(model, null, errors::add);
+    }
+
+    @Test
+    public void testChangesWithoutView() {
+        assertTrue(controller.addTransaction(50.0, "food"));
+        assertTrue(controller.addTransaction(20.0, "travel"));
+        assertFalse(controller.addTransaction(-1.0, "food"));
+        controller.setFilter(new CategoryFilter("food"));
+        controller.applyFilter();
+
+        controller.removeTransaction(new int[] {0});
+        assertEquals(1, model.getTransactions().size());
+        assertTrue(controller.undo());
+        assertEquals(70.0, model.getTotalAmount(), 0.01);
+        assertTrue(controller.redo());
+        assertEquals(20.0, model.getTotalAmount(), 0.01);
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testErrorsGoToReporter() {
+        controller.applyFilter();
+        assertEquals(List.of("No filter applied"), errors);
+
+        try {
+            controller.removeTransaction(new int[0]);
+            fail("An empty selection cannot be removed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Undo Disallowed.", e.getMessage());
+        }
+        assertEquals(List.of("No filter applied", "Undo Disallowed."), errors);
+    }
+
+    @Test
+    public void testAsyncFilterMatchesSyncFilter() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            controller.addTransaction(1 + i % 100, i % 3 == 0 ? "food" : "bills");
+        }
+        controller.setFilter(new CategoryFilter("food"));
+        Future<BitSet> first = controller.applyFilterAsync();
+        controller.setFilter(new AmountFilter(7));
+        Future<BitSet> second = controller.applyFilterAsync();
+
+        BitSet expected = new AmountFilter(7).filterRows(model.getTransactions());
+        assertEquals(expected, second.get(10, TimeUnit.SECONDS));
+        assertEquals(10, expected.cardinality());
+        // The first filter was either cancelled or had already finished
+        assertTrue(first.isDone());
+        assertTrue(errors.isEmpty());
+    }
+
+}
@@ -0,0 +1,83 @@
+// package test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.MBeanServer;
+
+import org.junit.Test;
+
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.Filter.CategoryFilter;
+import model.Filter.TransactionFilter;
+
+public class TestMetrics {
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMeanMicros(), 1e-9);
+        assertEquals(1000.0, histogram.getMaxMicros(), 1e-9);
+        // Buckets are at most 12.5% wide
+        long p50 = histogram.percentile(0.5);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.125);
+        long p99 = histogram.percentile(0.99);
+        assertTrue(p99 >= 990_000 && p99 <= 1_000_000);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentile(0.5));
+    }
+
+    @Test
+    public void testMBeansAreRegistered() throws Exception {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        model.addTransaction(new Transaction(50.0, "food"));
+        model.addTransaction(new Transaction(20.0, "travel"));
+        Metrics.register(() -> model.getSnapshot().size(), model::getEstimatedHeapBytes);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(2, server.getAttribute(Metrics.objectName("Model", null), "RowCount"));
+        long heapBytes = (Long) server.getAttribute(Metrics.objectName("Model", null), "EstimatedHeapBytes");
+        assertTrue(heapBytes > 0);
+
+        Metrics.REFRESH_TABLE.reset();
+        Metrics.REFRESH_TABLE.record(2000);
+        assertEquals(1L, server.getAttribute(Metrics.objectName("Latency", "refreshTable"), "Count"));
+        // Filter MBeans are registered when the filter type is first used
+        Metrics.filter(TestMetrics.class).record(1000);
+        assertTrue(server.isRegistered(Metrics.objectName("Latency", "filter.TestMetrics")));
+    }
+
+    @Test
+    public void testFilterNamesAreNeverEmpty() {
+        TransactionFilter lambda = transactions -> transactions;
+        TransactionFilter anonymous = new TransactionFilter() {
+            @Override
+            public List<Transaction> filter(List<Transaction> transactions) {
+                return transactions;
+            }
+        };
+        Metrics.register(() -> 0, () -> 0L);
+        Metrics.filter(lambda.getClass()).record(1000);
+        Metrics.filter(anonymous.getClass()).record(1000);
+        // Named after the class, so they are kept apart and not registered as "filter."
+        assertNotSame(Metrics.filter(lambda.getClass()), Metrics.filter(anonymous.getClass()));
+        assertEquals(1, Metrics.filter(anonymous.getClass()).getCount());
+        assertNotSame(Metrics.filter(anonymous.getClass()), Metrics.filter(CategoryFilter.class));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertTrue(server.isRegistered(Metrics.objectName("Latency", "filter." + lambda.getClass().getName())));
+        assertTrue(server.isRegistered(Metrics.objectName("Latency", "filter." + anonymous.getClass().getName())));
+    }
+
+}
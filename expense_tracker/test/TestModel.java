@@ -0,0 +1,701 @@
+// package test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import controller.InputValidation;
+import model.BatchResult;
+import model.CategoryRegistry;
+import model.ExpenseTrackerModel;
+import model.Granularity;
+import model.ModelEvent;
+import model.TimeBucket;
+import model.Transaction;
+import model.TransactionSnapshot;
+import model.Filter.AmountFilter;
+import model.Filter.AmountRangeFilter;
+import model.Filter.AndFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.NotFilter;
+import model.Filter.OrFilter;
+import model.Filter.RowIndexFilter;
+import model.Filter.RowScan;
+import model.Filter.TransactionFilter;
+import view.CoalescingTableUpdater;
+import view.HighlightRenderer;
+import view.TransactionTableModel;
+
+/**
+ * Model level tests which do not need a display, so they also run on headless machines.
+ */
+public class TestModel {
+
+    private ExpenseTrackerModel model;
+
+    @Before
+    public void setup() {
+        model = new ExpenseTrackerModel();
+    }
+
+    @Test
+    public void testColumnarRoundTrip() {
+        Transaction food = new Transaction(12.5, "food");
+        Transaction travel = new Transaction(300.0, "Travel");
+        model.addTransaction(food);
+        model.addTransaction(travel);
+
+        List<Transaction> transactions = model.getTransactions();
+        assertEquals(2, transactions.size());
+        assertEquals(food, transactions.get(0));
+        assertEquals(12.5, transactions.get(0).getAmount(), 0.0);
+        assertEquals("Travel", transactions.get(1).getCategory());
+        assertEquals(travel.getTimestamp(), transactions.get(1).getTimestamp());
+    }
+
+    @Test
+    public void testRemoveMaterializedTransaction() {
+        model.addTransaction(new Transaction(10.0, "food"));
+        model.addTransaction(new Transaction(20.0, "bills"));
+        model.addTransaction(new Transaction(30.0, "other"));
+
+        // Rows read back from the model are fresh objects, removal must still find them
+        model.removeTransaction(model.getTransactions().get(1));
+
+        List<Transaction> transactions = model.getTransactions();
+        assertEquals(2, transactions.size());
+        assertEquals(10.0, transactions.get(0).getAmount(), 0.0);
+        assertEquals(30.0, transactions.get(1).getAmount(), 0.0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsReadOnly() {
+        model.addTransaction(new Transaction(10.0, "food"));
+        model.getTransactions().add(new Transaction(20.0, "food"));
+    }
+
+    @Test
+    public void testSnapshotIsStableAcrossWrites() {
+        model.addTransaction(new Transaction(10.0, "food"));
+        model.addTransaction(new Transaction(20.0, "bills"));
+        TransactionSnapshot before = model.getSnapshot();
+        // Without a change in between, the same snapshot is handed out again
+        assertSame(before, model.getTransactions());
+
+        model.addTransaction(new Transaction(30.0, "other"));
+        model.removeTransaction(before.get(0));
+
+        assertEquals(2, before.size());
+        assertEquals(10.0, before.get(0).getAmount(), 0.0);
+        assertEquals(20.0, before.get(1).getAmount(), 0.0);
+        assertEquals(2, model.getTransactions().size());
+        assertEquals(20.0, model.getTransactions().get(0).getAmount(), 0.0);
+        assertTrue(model.getVersion() > before.getVersion());
+    }
+
+    @Test
+    public void testCategoryFilterUsesIndex() {
+        model.addTransaction(new Transaction(10.0, "food"));
+        model.addTransaction(new Transaction(20.0, "bills"));
+        model.addTransaction(new Transaction(30.0, "Food"));
+        TransactionSnapshot stale = model.getSnapshot();
+        model.removeTransaction(stale.get(1));
+
+        CategoryFilter filter = new CategoryFilter("FOOD");
+        TransactionSnapshot current = model.getSnapshot();
+        assertArrayEquals(new int[] {0, 1}, current.rowsInCategory("food"));
+        List<Transaction> filtered = filter.filter(current);
+        assertEquals(2, filtered.size());
+        assertEquals(30.0, filtered.get(1).getAmount(), 0.0);
+
+        // Removed rows keep their slots, so the older snapshot can still use the index
+        assertArrayEquals(new int[] {0, 2}, stale.rowsInCategory("food"));
+        // Until compaction moves the rows, then it is answered by a scan
+        model.compact();
+        assertNull(stale.rowsInCategory("food"));
+        assertEquals(2, filter.filter(stale).size());
+        assertArrayEquals(new int[] {0, 1}, model.getSnapshot().rowsInCategory("food"));
+    }
+
+    @Test
+    public void testAmountRangeFilterMatchesScan() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            model.addTransaction(new Transaction(1 + random.nextInt(100), "food"));
+            if (i % 7 == 0) {
+                model.removeTransaction(model.getTransactions().get(random.nextInt(i / 2 + 1)));
+            }
+        }
+        TransactionSnapshot snapshot = model.getSnapshot();
+        AmountRangeFilter[] filters = {
+            AmountRangeFilter.between(20, 40), AmountRangeFilter.over(90), AmountRangeFilter.under(5)
+        };
+        for (AmountRangeFilter filter : filters) {
+            int[] rows = snapshot.rowsInAmountRange(filter.getMinAmount(), filter.getMaxAmount());
+            List<Transaction> scanned = filter.filter(new ArrayList<>(snapshot));
+            assertEquals(scanned.size(), rows.length);
+            assertEquals(scanned, filter.filter(snapshot));
+        }
+        assertEquals(new AmountRangeFilter(50, 50).filter(snapshot), new AmountFilter(50).filter(snapshot));
+        assertTrue(AmountRangeFilter.over(100).filter(snapshot).isEmpty());
+    }
+
+    @Test
+    public void testAmountRangeQueriesBetweenAdds() {
+        Random random = new Random(7);
+        AmountRangeFilter filter = AmountRangeFilter.between(20, 40);
+        // Queries after every few adds see both merged rows and rows still pending in the index
+        for (int i = 0; i < 2000; i++) {
+            model.addTransaction(new Transaction(1 + random.nextInt(100), "food"));
+            if (i % 37 == 0) {
+                TransactionSnapshot snapshot = model.getSnapshot();
+                int[] rows = snapshot.rowsInAmountRange(20, 40);
+                List<Transaction> scanned = filter.filter(new ArrayList<>(snapshot));
+                assertEquals(scanned.size(), rows.length);
+                for (int k = 0; k < rows.length; k++) {
+                    assertEquals(scanned.get(k), snapshot.get(rows[k]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFilterRowsWithEqualTransactions() {
+        Transaction lunch = new Transaction(50.0, "food");
+        model.addTransaction(lunch);
+        model.addTransaction(new Transaction(20.0, "bills"));
+        // The same transaction twice, indexOf would report the first row for both
+        model.addTransaction(lunch);
+
+        BitSet byAmount = new AmountFilter(50).filterRows(model.getTransactions());
+        BitSet byCategory = new CategoryFilter("food").filterRows(new ArrayList<>(model.getTransactions()));
+        assertEquals("{0, 2}", byAmount.toString());
+        assertEquals(byAmount, byCategory);
+    }
+
+    @Test
+    public void testCompositeFiltersMatchScan() {
+        String[] categories = {"food", "travel", "bills", "entertainment", "other"};
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            model.addTransaction(new Transaction(1 + random.nextInt(100), categories[random.nextInt(categories.length)]));
+        }
+        TransactionSnapshot snapshot = model.getSnapshot();
+        // A plain TransactionFilter without row support takes part as well
+        TransactionFilter expensive = transactions -> {
+            List<Transaction> result = new ArrayList<>();
+            for (Transaction t : transactions) {
+                if (t.getAmount() > 50) {
+                    result.add(t);
+                }
+            }
+            return result;
+        };
+
+        BitSet foodOver50 = new AndFilter(expensive, new CategoryFilter("Food")).filterRows(snapshot);
+        BitSet travelOrBills = new OrFilter(new CategoryFilter("travel"), new CategoryFilter("bills")).filterRows(snapshot);
+        BitSet notFoodUnder10 = new AndFilter(new NotFilter(new CategoryFilter("food")), AmountRangeFilter.under(10))
+            .filterRows(snapshot);
+        for (int row = 0; row < snapshot.size(); row++) {
+            String category = snapshot.getCategory(row);
+            double amount = snapshot.getAmount(row);
+            assertEquals(category.equals("food") && amount > 50, foodOver50.get(row));
+            assertEquals(category.equals("travel") || category.equals("bills"), travelOrBills.get(row));
+            assertEquals(!category.equals("food") && amount < 10, notFoodUnder10.get(row));
+        }
+        assertEquals(foodOver50, new AndFilter(new CategoryFilter("food"), AmountRangeFilter.over(50)).filterRows(
+            new ArrayList<>(snapshot)));
+    }
+
+    @Test
+    public void testAndFilterEvaluatesMostSelectiveFirst() {
+        for (int i = 0; i < 1000; i++) {
+            model.addTransaction(new Transaction(1 + i % 100, i % 100 == 0 ? "travel" : "food"));
+        }
+        TransactionSnapshot snapshot = model.getSnapshot();
+        List<Integer> probed = new ArrayList<>();
+        // Only sees the rows left by the category, which matches one row in a hundred
+        RowIndexFilter recording = new RowIndexFilter() {
+            @Override
+            public BitSet filterRows(List<Transaction> transactions) {
+                throw new AssertionError("Evaluated on every row");
+            }
+
+            @Override
+            public BitSet filterRows(List<Transaction> transactions, BitSet candidates) {
+                probed.add(candidates.cardinality());
+                return (BitSet) candidates.clone();
+            }
+        };
+        assertEquals(10, new CategoryFilter("travel").estimateRows(snapshot));
+        assertEquals(10, new AndFilter(recording, new CategoryFilter("travel")).filterRows(snapshot).cardinality());
+        assertEquals(List.of(10), probed);
+
+        // Nothing is left after the category, so the other filter is skipped
+        assertTrue(new AndFilter(recording, new CategoryFilter("bills")).filterRows(snapshot).isEmpty());
+        assertEquals(1, probed.size());
+    }
+
+    @Test
+    public void testParallelScanMatchesSequential() {
+        // Not a multiple of 64, so the last range ends inside a word
+        int size = RowScan.PARALLEL_THRESHOLD * 3 + 37;
+        Random random = new Random(11);
+        boolean[] matches = new boolean[size];
+        for (int row = 0; row < size; row++) {
+            matches[row] = random.nextInt(3) == 0;
+        }
+        BitSet sequential = RowScan.sequential(size, row -> matches[row]);
+        assertEquals(sequential, RowScan.parallel(size, row -> matches[row]));
+        assertEquals(sequential, RowScan.scan(new ArrayList<>(Collections.nCopies(size, 0)), row -> matches[row]));
+        assertTrue(RowScan.parallel(0, row -> true).isEmpty());
+    }
+
+    @Test
+    public void testInterruptedScanIsCancelled() {
+        int size = RowScan.PARALLEL_THRESHOLD * 4;
+        Thread.currentThread().interrupt();
+        try {
+            RowScan.sequential(size, row -> true);
+            fail("An interrupted scan must stop");
+        } catch (CancellationException e) {
+            // expected
+        }
+        try {
+            RowScan.parallel(size, row -> true);
+            fail("An interrupted scan must stop");
+        } catch (CancellationException e) {
+            // expected
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(size, RowScan.parallel(size, row -> true).cardinality());
+    }
+
+    @Test
+    public void testAggregatesFollowAddsAndRemoves() {
+        assertTrue(Double.isNaN(model.getSnapshot().getMinAmount()));
+        model.addTransaction(new Transaction(40.0, "food"));
+        model.addTransaction(new Transaction(10.0, "Food"));
+        model.addTransaction(new Transaction(99.5, "bills"));
+        TransactionSnapshot before = model.getSnapshot();
+
+        model.removeTransaction(model.getTransactions().get(1));
+        TransactionSnapshot snapshot = model.getSnapshot();
+        assertEquals(139.5, snapshot.getTotalAmount(), 0.0);
+        assertEquals(40.0, snapshot.getMinAmount(), 0.0);
+        assertEquals(99.5, snapshot.getMaxAmount(), 0.0);
+        assertEquals(40.0, snapshot.getCategoryTotal("FOOD"), 0.0);
+        assertEquals(1, snapshot.getCategoryCount("food"));
+        assertEquals(0, snapshot.getCategoryCount("travel"));
+        // Earlier snapshots keep the aggregates of their version
+        assertEquals(149.5, before.getTotalAmount(), 0.0);
+        assertEquals(10.0, before.getMinAmount(), 0.0);
+        assertEquals(2, before.getCategoryCount("food"));
+
+        model.removeTransaction(model.getTransactions().get(0));
+        model.removeTransaction(model.getTransactions().get(0));
+        assertEquals(0.0, model.getTotalAmount(), 0.0);
+        assertTrue(Double.isNaN(model.getSnapshot().getMaxAmount()));
+    }
+
+    @Test
+    public void testTotalUsesCompensatedSummation() {
+        List<Transaction> batch = new ArrayList<>();
+        BigDecimal exact = BigDecimal.ZERO;
+        for (int i = 0; i < 50000; i++) {
+            double amount = amountAt(i);
+            batch.add(new Transaction(amount, "bills"));
+            exact = exact.add(new BigDecimal(amount));
+        }
+        model.addTransactions(batch);
+        for (int i = 0; i < 200; i++) {
+            model.removeTransaction(model.getTransactions().get(0));
+            exact = exact.subtract(new BigDecimal(amountAt(i)));
+        }
+        // Correctly rounded, where a plain running sum is off by about 3e-9
+        assertEquals(exact.doubleValue(), model.getTotalAmount(), 0.0);
+    }
+
+    @Test
+    public void testRunningTotalMatchesSumOfTransactions() {
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            model.addTransaction(new Transaction(1 + random.nextInt(99900) / 100.0, "food"));
+            if (i % 5 == 0) {
+                model.removeTransaction(model.getTransactions().get(random.nextInt(i / 2 + 1)));
+            }
+            if (i % 100 == 99) {
+                List<Transaction> removed = new ArrayList<>(model.getTransactions().subList(0, 1));
+                model.removeTransactions(removed.get(0).getId());
+                model.restoreTransactions(removed);
+            }
+        }
+        double sum = 0.0;
+        for (Transaction transaction : model.getTransactions()) {
+            sum += transaction.getAmount();
+        }
+        assertEquals(sum, model.getTotalAmount(), 1e-6);
+    }
+
+    private static double amountAt(int i) {
+        return i % 3 == 0 ? 0.07 : i % 2 == 0 ? 0.01 : 999.99;
+    }
+
+    @Test
+    public void testRollupsFollowAddsAndRemoves() {
+        // Sunday the 30th of April and Monday the 1st and Wednesday the 3rd of May 2023
+        long sunday = millis(2023, 4, 30, 23, 59);
+        long monday = millis(2023, 5, 1, 0, 0);
+        long wednesday = millis(2023, 5, 3, 12, 0);
+        model.addTransaction(new Transaction(10.0, "food", sunday));
+        model.addTransaction(new Transaction(20.0, "food", monday));
+        model.addTransaction(new Transaction(30.0, "Bills", wednesday));
+        model.addTransaction(new Transaction(5.0, "food", wednesday + 60_000));
+
+        List<TimeBucket> days = model.getRollup(Granularity.DAY, null, 0, Long.MAX_VALUE);
+        assertEquals(3, days.size());
+        assertEquals(millis(2023, 4, 30, 0, 0), days.get(0).getStart());
+        assertEquals(monday, days.get(1).getStart());
+        assertEquals(35.0, days.get(2).getTotal(), 0.0);
+        assertEquals(2, days.get(2).getCount());
+
+        List<TimeBucket> weeks = model.getRollup(Granularity.WEEK, "food", 0, Long.MAX_VALUE);
+        assertEquals(2, weeks.size());
+        assertEquals(25.0, weeks.get(1).getTotal(), 0.0);
+        List<TimeBucket> months = model.getRollup(Granularity.MONTH, "bills", monday, Long.MAX_VALUE);
+        assertEquals(1, months.size());
+        assertEquals(monday, months.get(0).getStart());
+        assertEquals(30.0, months.get(0).getTotal(), 0.0);
+
+        // The bucket of a removed transaction disappears once it is empty
+        model.removeTransaction(model.getTransactions().get(0));
+        assertEquals(monday, model.getRollup(Granularity.DAY, null, 0, Long.MAX_VALUE).get(0).getStart());
+        assertEquals(1, model.getRollup(Granularity.MONTH, null, 0, Long.MAX_VALUE).size());
+    }
+
+    private static long millis(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void testRemoveByIdKeepsRowsAndIndexesConsistent() {
+        String[] categories = {"food", "travel", "bills"};
+        Random random = new Random(3);
+        List<Transaction> expected = new ArrayList<>();
+        for (int i = 0; i < 6000; i++) {
+            expected.add(new Transaction(1 + random.nextInt(500), categories[i % 3]));
+        }
+        model.addTransactions(expected);
+        TransactionSnapshot before = model.getSnapshot();
+
+        // Enough batches to cross the compaction threshold while checking every intermediate state
+        for (int batch = 0; batch < 40; batch++) {
+            TransactionSnapshot snapshot = model.getSnapshot();
+            long[] ids = new long[50];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = snapshot.getId(random.nextInt(snapshot.size()));
+            }
+            model.removeTransactions(ids);
+            for (long id : ids) {
+                expected.removeIf(t -> t.getId() == id);
+            }
+            TransactionSnapshot current = model.getSnapshot();
+            assertEquals(expected, current);
+            assertEquals(expected.size(), new CategoryFilter("food").filterRows(current).cardinality()
+                + new CategoryFilter("travel").filterRows(current).cardinality()
+                + new CategoryFilter("bills").filterRows(current).cardinality());
+            assertEquals(AmountRangeFilter.under(20).filterRows(new ArrayList<>(current)),
+                AmountRangeFilter.under(20).filterRows(current));
+        }
+        model.compact();
+        TransactionSnapshot compacted = model.getSnapshot();
+        assertEquals(expected, compacted);
+        for (int row = 0; row < compacted.size(); row++) {
+            assertEquals(expected.get(row).getId(), compacted.getId(row));
+        }
+        assertEquals(6000, before.size());
+        assertEquals(expected.stream().mapToDouble(Transaction::getAmount).min().getAsDouble(),
+            compacted.getMinAmount(), 0.0);
+    }
+
+    @Test
+    public void testCategoryRegistryInternsCategoriesIgnoringCase() {
+        assertEquals(CategoryRegistry.codeOf("food"), CategoryRegistry.codeOf("FoOd"));
+        assertEquals(CategoryRegistry.UNKNOWN, CategoryRegistry.codeOf("fo od"));
+        assertEquals(CategoryRegistry.UNKNOWN, CategoryRegistry.codeOf(""));
+        assertEquals(CategoryRegistry.UNKNOWN, CategoryRegistry.codeOf("groceries"));
+        assertFalse(InputValidation.isValidCategory("groceries"));
+
+        // Custom categories are accepted everywhere once registered
+        int code = CategoryRegistry.register("Groceries");
+        assertEquals(code, CategoryRegistry.register("GROCERIES"));
+        assertEquals("groceries", CategoryRegistry.name(code));
+        assertTrue(InputValidation.isValidCategory("groceries"));
+        byte[] line = "12.5,GROCERIES".getBytes();
+        assertEquals(code, CategoryRegistry.codeOf(line, 5, 9));
+
+        model.addTransaction(new Transaction(10.0, "Groceries"));
+        model.addTransaction(new Transaction(20.0, "food"));
+        model.addTransaction(new Transaction(30.0, "groceries"));
+        TransactionSnapshot snapshot = model.getSnapshot();
+        // Rows keep their spelling, while the indexes and totals treat it as one category
+        assertEquals("Groceries", snapshot.getCategory(0));
+        assertEquals(code, snapshot.getCategoryCode(2));
+        assertEquals(2, snapshot.getCategoryCount("GROCERIES"));
+        assertEquals(40.0, snapshot.getCategoryTotal("groceries"), 0.0);
+        BitSet rows = new CategoryFilter("groceries").filterRows(snapshot);
+        assertEquals(rows, new CategoryFilter("groceries").filterRows(new ArrayList<>(snapshot)));
+        assertEquals(2, rows.cardinality());
+    }
+
+    @Test
+    public void testRestoreRemovedTransactionsInPlace() {
+        List<Transaction> added = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            added.add(new Transaction(10 + i, i % 2 == 0 ? "food" : "bills"));
+        }
+        model.addTransactions(added);
+        List<Transaction> removed = List.of(added.get(0), added.get(5));
+        model.removeTransactions(removed.get(0).getId(), removed.get(1).getId());
+        assertEquals(8, model.getTransactions().size());
+        assertEquals(11.0, model.getSnapshot().getMinAmount(), 0.0);
+
+        // Restored in their previous rows, a second restore changes nothing
+        assertEquals(2, model.restoreTransactions(removed));
+        assertEquals(0, model.restoreTransactions(removed));
+        TransactionSnapshot restored = model.getSnapshot();
+        assertEquals(added, restored);
+        assertEquals(added.get(5).getId(), restored.getId(5));
+        assertEquals(10.0, restored.getMinAmount(), 0.0);
+        assertEquals(145.0, model.getTotalAmount(), 0.0);
+        assertEquals(5, new CategoryFilter("food").filterRows(restored).cardinality());
+
+        // Once the rows are compacted away the transactions are added at the end
+        model.removeTransactions(removed.get(0).getId());
+        model.compact();
+        assertEquals(1, model.restoreTransactions(removed));
+        assertEquals(added.get(0), model.getTransactions().get(9));
+        assertEquals(145.0, model.getTotalAmount(), 0.0);
+    }
+
+    @Test
+    public void testRemoveTransactionAddedTwice() {
+        Transaction lunch = new Transaction(50.0, "food");
+        model.addTransaction(lunch);
+        model.addTransaction(new Transaction(20.0, "bills"));
+        model.addTransaction(lunch);
+
+        model.removeTransaction(lunch);
+        assertEquals(2, model.getTransactions().size());
+        assertEquals("bills", model.getSnapshot().getCategory(0));
+        model.removeTransaction(lunch);
+        assertEquals(1, model.getTransactions().size());
+        model.removeTransaction(lunch);
+        assertEquals(1, model.getTransactions().size());
+    }
+
+    @Test
+    public void testTableModelReportsIncrementalRows() {
+        TransactionTableModel tableModel = new TransactionTableModel();
+        List<TableModelEvent> events = new ArrayList<>();
+        tableModel.addTableModelListener(events::add);
+        assertEquals(0, tableModel.getRowCount());
+
+        model.addTransaction(new Transaction(10.0, "food"));
+        tableModel.setTransactions(model.getTransactions());
+        model.addTransaction(new Transaction(20.0, "bills"));
+        events.clear();
+        tableModel.rowsInserted(model.getTransactions(), 1, 1);
+
+        // Only the new row is inserted and the total row updated
+        assertEquals(TableModelEvent.INSERT, events.get(0).getType());
+        assertEquals(1, events.get(0).getFirstRow());
+        assertEquals(2, events.get(1).getFirstRow());
+        assertEquals(3, tableModel.getRowCount());
+        assertEquals(20.0, (Double) tableModel.getValueAt(1, 1), 0.0);
+        assertEquals("Total", tableModel.getValueAt(2, 0));
+        assertEquals(30.0, (Double) tableModel.getValueAt(2, 3), 0.01);
+
+        model.removeTransaction(model.getTransactions().get(0));
+        tableModel.rowsDeleted(model.getTransactions(), 0, 0);
+        assertEquals(2, tableModel.getRowCount());
+        assertEquals("bills", tableModel.getValueAt(0, 2));
+        assertEquals(20.0, (Double) tableModel.getValueAt(1, 3), 0.01);
+    }
+
+    @Test
+    public void testModelChangesAreCoalescedPerFrame() throws Exception {
+        TransactionTableModel tableModel = new TransactionTableModel();
+        List<ModelEvent> changes = new CopyOnWriteArrayList<>();
+        model.addModelListener(changes::add);
+        model.addModelListener(new CoalescingTableUpdater(model, tableModel));
+        List<TableModelEvent> events = new ArrayList<>();
+        tableModel.addTableModelListener(events::add);
+
+        // About 10k adds per second from another thread for half a second
+        Thread feed = new Thread(() -> {
+            for (int i = 0; i < 5000; i++) {
+                model.addTransaction(new Transaction(1 + i % 100, "food"));
+                if (i % 10 == 9) {
+                    LockSupport.parkNanos(1_000_000);
+                }
+            }
+            model.removeTransactions(model.getSnapshot().getId(0));
+        });
+        feed.start();
+        feed.join();
+        assertEquals(5001, changes.size());
+        assertEquals(ModelEvent.Type.ADDED, changes.get(0).getType());
+        assertEquals(4999, changes.get(4999).getFirstRow());
+        assertEquals(ModelEvent.Type.REMOVED, changes.get(5000).getType());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        int[] rows = new int[1];
+        do {
+            Thread.sleep(CoalescingTableUpdater.FRAME_MILLIS);
+            SwingUtilities.invokeAndWait(() -> rows[0] = tableModel.getRowCount());
+        } while (rows[0] != 5000 && System.currentTimeMillis() < deadline);
+        // Every row and the total row, after far fewer table updates than changes
+        assertEquals(5000, rows[0]);
+        assertEquals(model.getTotalAmount(), (Double) tableModel.getValueAt(4999, 3), 0.01);
+        assertTrue(events.size() + " table events", events.size() < 500);
+
+        // A snapshot the table already shows is not applied again
+        assertFalse(tableModel.update(model.getSnapshot(), Collections.emptyList()));
+    }
+
+    @Test
+    public void testTableModelDeletesAndInsertsChangedRows() {
+        for (int i = 0; i < 10; i++) {
+            model.addTransaction(new Transaction(10 + i, "food"));
+        }
+        TransactionTableModel tableModel = new TransactionTableModel();
+        tableModel.setTransactions(model.getTransactions());
+        List<ModelEvent> changes = new ArrayList<>();
+        model.addModelListener(changes::add);
+        List<TableModelEvent> events = new ArrayList<>();
+        tableModel.addTableModelListener(events::add);
+
+        TransactionSnapshot before = model.getSnapshot();
+        List<Transaction> removed = Arrays.asList(before.get(2), before.get(3), before.get(7));
+        model.removeTransactions(removed.get(0).getId(), removed.get(1).getId(), removed.get(2).getId());
+        model.addTransaction(new Transaction(99, "bills"));
+        assertArrayEquals(new int[] {2, 3, 7}, changes.get(0).getRows());
+        // Changes reach the updater in any order
+        Collections.reverse(changes);
+        assertTrue(tableModel.update(model.getSnapshot(), changes));
+
+        // The deletes run from the last row, the append and the total row follow
+        assertEquals(TableModelEvent.DELETE, events.get(0).getType());
+        assertEquals(7, events.get(0).getFirstRow());
+        assertEquals(TableModelEvent.DELETE, events.get(2).getType());
+        assertEquals(2, events.get(2).getFirstRow());
+        assertEquals(3, events.get(2).getLastRow());
+        assertEquals(TableModelEvent.INSERT, events.get(4).getType());
+        assertEquals(7, events.get(4).getFirstRow());
+        assertEquals(9, tableModel.getRowCount());
+
+        changes.clear();
+        events.clear();
+        model.restoreTransactions(removed);
+        assertArrayEquals(new int[] {2, 3, 7}, changes.get(0).getRows());
+        tableModel.update(model.getSnapshot(), changes);
+        assertEquals(TableModelEvent.INSERT, events.get(0).getType());
+        assertEquals(2, events.get(0).getFirstRow());
+        assertEquals(3, events.get(0).getLastRow());
+        assertEquals(7, events.get(2).getFirstRow());
+        assertEquals(12, tableModel.getRowCount());
+        assertEquals(12.0, (Double) tableModel.getValueAt(2, 1), 0.0);
+
+        // A change that is missing makes the table show every row again
+        events.clear();
+        model.addTransaction(new Transaction(5, "food"));
+        tableModel.update(model.getSnapshot(), Collections.emptyList());
+        assertEquals(1, events.size());
+        assertEquals(Integer.MAX_VALUE, events.get(0).getLastRow());
+        // The controller compares it with the snapshot an async filter ran on
+        assertEquals(model.getVersion(), tableModel.getVersion());
+        assertEquals(-1, new TransactionTableModel().getVersion());
+    }
+
+    @Test
+    public void testHighlightRendererUsesRowSet() {
+        model.addTransaction(new Transaction(10.0, "food"));
+        model.addTransaction(new Transaction(20.0, "bills"));
+        TransactionTableModel tableModel = new TransactionTableModel();
+        tableModel.setTransactions(model.getTransactions());
+        JTable table = new JTable(tableModel);
+        HighlightRenderer renderer = new HighlightRenderer();
+        table.setDefaultRenderer(Object.class, renderer);
+
+        BitSet rows = new BitSet();
+        rows.set(1);
+        renderer.setHighlightedRows(table, rows);
+        rows.clear();
+
+        // The renderer keeps its own copy of the rows
+        assertTrue(renderer.isHighlighted(1));
+        assertEquals(HighlightRenderer.HIGHLIGHT_COLOR, table.prepareRenderer(table.getCellRenderer(1, 2), 1, 2).getBackground());
+        assertEquals(table.getBackground(), table.prepareRenderer(table.getCellRenderer(0, 2), 0, 2).getBackground());
+    }
+
+    @Test
+    public void testAddTransactionsInOneVersion() {
+        model.addTransaction(new Transaction(5.0, "other"));
+        long version = model.getVersion();
+        List<Transaction> batch = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            batch.add(i == 50 ? null : new Transaction(i, "food"));
+        }
+
+        BatchResult result = model.addTransactions(batch);
+
+        assertEquals(99, result.getAddedCount());
+        assertEquals(1, result.getFirstRow());
+        assertEquals(99, result.getLastRow());
+        assertEquals(1, result.getRejections().size());
+        assertEquals(49, result.getRejections().get(0).getIndex());
+        assertEquals(version + 1, model.getVersion());
+        assertEquals(100, model.getTransactions().size());
+        assertEquals(99, new CategoryFilter("food").filterRows(model.getTransactions()).cardinality());
+        assertEquals(10, AmountRangeFilter.between(91, 100).filterRows(model.getTransactions()).cardinality());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testTimestampKeepsItsFormat() {
+        Transaction transaction = new Transaction(10.0, "food");
+        String expected = Transaction.dateFormatter.format(new Date(transaction.getTimeMillis()));
+        assertEquals(expected, transaction.getTimestamp());
+        // Formatted once per minute and then served from the cache
+        Transaction other = new Transaction(20.0, "food");
+        if (other.getTimeMillis() / 60000 == transaction.getTimeMillis() / 60000) {
+            assertSame(transaction.getTimestamp(), other.getTimestamp());
+        }
+    }
+}
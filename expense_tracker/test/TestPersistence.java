@@ -0,0 +1,287 @@
+// package test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import controller.InputValidation;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionSnapshot;
+import model.Filter.AmountRangeFilter;
+import model.Filter.CategoryFilter;
+import model.Persistence.CsvImporter;
+import model.Persistence.WriteAheadLog;
+
+/**
+ * Tests that a model survives a restart, through its write-ahead log or a snapshot file.
+ */
+public class TestPersistence {
+
+    private Path file;
+
+    @Before
+    public void setup() throws Exception {
+        file = Files.createTempFile("expenses", ".wal");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testReplayRebuildsModel() throws Exception {
+        try (WriteAheadLog log = new WriteAheadLog(file, 1, TimeUnit.MILLISECONDS)) {
+            ExpenseTrackerModel model = new ExpenseTrackerModel(log);
+            model.addTransaction(new Transaction(10.0, "food"));
+            model.addTransaction(new Transaction(20.0, "bills"));
+            model.addTransaction(new Transaction(30.0, "travel"));
+            model.removeTransaction(model.getTransactions().get(1));
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(file, 1, TimeUnit.MILLISECONDS)) {
+            ExpenseTrackerModel model = new ExpenseTrackerModel(log);
+            List<Transaction> transactions = model.getTransactions();
+            assertEquals(2, transactions.size());
+            assertEquals(10.0, transactions.get(0).getAmount(), 0.0);
+            assertEquals("travel", transactions.get(1).getCategory());
+            model.addTransaction(new Transaction(40.0, "other"));
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(file, 1, TimeUnit.MILLISECONDS)) {
+            assertEquals(3, new ExpenseTrackerModel(log).getTransactions().size());
+        }
+    }
+
+    @Test
+    public void testReplayRemovesById() throws Exception {
+        Transaction kept;
+        try (WriteAheadLog log = new WriteAheadLog(file, 1, TimeUnit.MILLISECONDS)) {
+            ExpenseTrackerModel model = new ExpenseTrackerModel(log);
+            List<Transaction> batch = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                batch.add(new Transaction(10.0, "food"));
+            }
+            model.addTransactions(batch);
+            kept = batch.get(0);
+            // Equal values, only the ids tell which rows were removed
+            long[] removed = new long[999];
+            for (int i = 1; i < 1000; i++) {
+                removed[i - 1] = batch.get(i).getId();
+            }
+            model.removeTransactions(removed);
+        }
+        try (WriteAheadLog log = new WriteAheadLog(file, 1, TimeUnit.MILLISECONDS)) {
+            ExpenseTrackerModel model = new ExpenseTrackerModel(log);
+            List<Transaction> transactions = model.getTransactions();
+            assertEquals(1, transactions.size());
+            assertEquals(kept.getId(), transactions.get(0).getId());
+            assertTrue(new Transaction(20.0, "food").getId() > kept.getId());
+        }
+    }
+
+    @Test
+    public void testTornRecordIsCutOff() throws Exception {
+        try (WriteAheadLog log = new WriteAheadLog(file, 1, TimeUnit.MILLISECONDS)) {
+            ExpenseTrackerModel model = new ExpenseTrackerModel(log);
+            model.addTransaction(new Transaction(10.0, "food"));
+            model.addTransaction(new Transaction(20.0, "bills"));
+        }
+        // Simulate a crash in the middle of writing the last record
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(file, 1, TimeUnit.MILLISECONDS)) {
+            ExpenseTrackerModel model = new ExpenseTrackerModel(log);
+            assertEquals(1, model.getTransactions().size());
+            model.addTransaction(new Transaction(30.0, "other"));
+        }
+        try (WriteAheadLog log = new WriteAheadLog(file, 1, TimeUnit.MILLISECONDS)) {
+            List<Transaction> transactions = new ExpenseTrackerModel(log).getTransactions();
+            assertEquals(2, transactions.size());
+            assertEquals(30.0, transactions.get(1).getAmount(), 0.0);
+        }
+    }
+
+    @Test
+    public void testConcurrentBatchesAreDurable() throws Exception {
+        int threads = 8;
+        int perThread = 5000;
+        try (WriteAheadLog log = new WriteAheadLog(file, 2, TimeUnit.MILLISECONDS)) {
+            ExpenseTrackerModel model = new ExpenseTrackerModel(log);
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread writer = new Thread(() -> {
+                    // Batches of 100 share one wait for the disk
+                    List<Transaction> batch = new ArrayList<>();
+                    for (int i = 0; i < perThread; i++) {
+                        batch.add(new Transaction(1 + i % 999, "food"));
+                        if (batch.size() == 100) {
+                            model.addTransactions(batch);
+                            batch.clear();
+                        }
+                    }
+                });
+                writers.add(writer);
+                writer.start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            assertEquals(threads * perThread, model.getTransactions().size());
+        }
+        try (WriteAheadLog log = new WriteAheadLog(file, 2, TimeUnit.MILLISECONDS)) {
+            assertEquals(threads * perThread, new ExpenseTrackerModel(log).getTransactions().size());
+        }
+    }
+
+    @Test
+    public void testSnapshotFileRoundTrip() throws Exception {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        List<Transaction> batch = new ArrayList<>();
+        String[] categories = {"food", "Travel", "bills"};
+        for (int i = 0; i < 1000000; i++) {
+            batch.add(new Transaction(1 + i % 1000, categories[i % categories.length]));
+        }
+        model.addTransactions(batch);
+        model.saveSnapshot(file);
+        ExpenseTrackerModel reopened = ExpenseTrackerModel.openSnapshot(file);
+
+        TransactionSnapshot snapshot = reopened.getSnapshot();
+        assertEquals(batch.size(), snapshot.size());
+        assertEquals(batch.get(0), snapshot.get(0));
+        assertEquals(batch.get(999999), snapshot.get(999999));
+        assertEquals("Travel", snapshot.getCategory(1));
+        assertEquals(1000, AmountRangeFilter.between(1, 1).filterRows(snapshot).cardinality());
+        assertEquals(333333, new CategoryFilter("bills").filterRows(snapshot).cardinality());
+
+        // The reopened store grows the columns it took over from the file
+        reopened.addTransaction(new Transaction(5.0, "food"));
+        assertEquals(batch.size() + 1, reopened.getTransactions().size());
+        assertEquals(5.0, reopened.getSnapshot().getAmount(batch.size()), 0.0);
+        assertEquals(batch.get(999999), reopened.getSnapshot().get(999999));
+    }
+
+    @Test
+    public void testCorruptSnapshotIsRejected() throws Exception {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        model.addTransaction(new Transaction(10.0, "food"));
+        model.addTransaction(new Transaction(20.0, "bills"));
+        model.saveSnapshot(file);
+        // Written through a temporary file, which is renamed over the snapshot
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+        byte[] valid = Files.readAllBytes(file);
+
+        Files.write(file, Arrays.copyOf(valid, valid.length - 4));
+        assertCorrupt();
+        byte[] negativeRows = valid.clone();
+        ByteBuffer.wrap(negativeRows).putInt(8, -1);
+        Files.write(file, negativeRows);
+        assertCorrupt();
+        byte[] manyRows = valid.clone();
+        ByteBuffer.wrap(manyRows).putInt(8, Integer.MAX_VALUE);
+        Files.write(file, manyRows);
+        assertCorrupt();
+        byte[] manyCategories = valid.clone();
+        ByteBuffer.wrap(manyCategories).putInt(12, Integer.MAX_VALUE);
+        Files.write(file, manyCategories);
+        assertCorrupt();
+        byte[] badCode = valid.clone();
+        ByteBuffer.wrap(badCode).putInt(badCode.length - 4, 7);
+        Files.write(file, badCode);
+        assertCorrupt();
+
+        Files.write(file, valid);
+        assertEquals(2, ExpenseTrackerModel.openSnapshot(file).getTransactions().size());
+    }
+
+    @Test
+    public void testUnknownCategoriesAreRejectedOnLoad() throws Exception {
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        model.addTransaction(new Transaction(10.0, "food"));
+        model.saveSnapshot(file);
+        byte[] bytes = Files.readAllBytes(file);
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        int at = text.indexOf("food");
+        System.arraycopy("qqqq".getBytes(StandardCharsets.US_ASCII), 0, bytes, at, 4);
+        Files.write(file, bytes);
+        assertCorrupt();
+
+        Files.write(file, new byte[0]);
+        try (WriteAheadLog log = new WriteAheadLog(file, 1, TimeUnit.MILLISECONDS)) {
+            log.replay((type, id, amount, category, time) -> { });
+            log.awaitDurable(log.append(WriteAheadLog.ADD, 1, 10.0, "qqqq", 0));
+        }
+        try (WriteAheadLog log = new WriteAheadLog(file, 1, TimeUnit.MILLISECONDS)) {
+            new ExpenseTrackerModel(log);
+            fail("A log with an unknown category must not open");
+        } catch (IOException expected) {
+            // The category is not registered just because a file holds it
+        }
+        assertFalse(InputValidation.isValidCategory("qqqq"));
+    }
+
+    private void assertCorrupt() {
+        try {
+            ExpenseTrackerModel.openSnapshot(file);
+            fail("A corrupt snapshot must not open");
+        } catch (IOException expected) {
+            // Reported as an I/O error, not as a runtime exception from the store
+        }
+    }
+
+    @Test
+    public void testCsvImportKeepsFileOrderAndReportsRejectedLines() throws Exception {
+        StringBuilder csv = new StringBuilder("amount,category,time\n");
+        for (int i = 0; i < 5000; i++) {
+            csv.append(1 + i % 999).append(".5,").append(i % 2 == 0 ? "food" : "Travel")
+                .append(',').append(1_600_000_000_000L + i).append("\r\n");
+        }
+        csv.append("abc,food\n");
+        csv.append("2000,food\n");
+        csv.append("12,shopping\n");
+        csv.append("\n");
+        csv.append("\"7.25\" , bills , 01-02-2023 10:30");
+        Files.write(file, csv.toString().getBytes(StandardCharsets.US_ASCII));
+
+        ExpenseTrackerModel model = new ExpenseTrackerModel();
+        List<Long> progress = new ArrayList<>();
+        // Small chunks and several threads, so the chunks are parsed out of order
+        CsvImporter.ImportReport report = new CsvImporter().setHeader(true).setChunkSize(4096).setThreads(4)
+            .setProgressListener((bytes, total, rows) -> progress.add(rows))
+            .importFile(file, model);
+
+        assertEquals(5001, report.getRowsImported());
+        assertEquals(3, report.getRejectedCount());
+        assertEquals(5002, report.getRejections().get(0).getLine());
+        assertEquals("The amount is not valid.", report.getRejections().get(1).getReason());
+        assertEquals("The category is not valid.", report.getRejections().get(2).getReason());
+        assertEquals(Long.valueOf(5001), progress.get(progress.size() - 1));
+
+        TransactionSnapshot snapshot = model.getSnapshot();
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(1 + i % 999 + 0.5, snapshot.getAmount(i), 0.0);
+            assertEquals(1_600_000_000_000L + i, snapshot.getTimeMillis(i));
+        }
+        assertEquals("Travel", snapshot.getCategory(1));
+        assertEquals("bills", snapshot.getCategory(5000));
+        assertEquals("01-02-2023 10:30", snapshot.get(5000).getTimestamp());
+    }
+}